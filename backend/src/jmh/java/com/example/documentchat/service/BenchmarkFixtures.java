@@ -0,0 +1,71 @@
+package com.example.documentchat.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.lang.reflect.Field;
+import java.util.Random;
+
+/**
+ * Synthetic data and wiring shared by the benchmarks. Services are created
+ * directly rather than through Spring, so injected fields are set here.
+ */
+final class BenchmarkFixtures {
+    
+    static final int DIMENSIONS = 768;
+    
+    private static final String[] WORDS = {
+        "the", "candidate", "interview", "team", "coding", "question", "solution", "data", "structures",
+        "algorithm", "design", "system", "leadership", "google", "hangouts", "round", "feedback", "offer",
+        "practice", "whiteboard", "complexity", "array", "tree", "graph", "hashtable", "recruiter", "week",
+        "minute", "focus", "areas", "preparation", "tips", "pitfalls", "and", "of", "with", "for", "a"
+    };
+    
+    private BenchmarkFixtures() {}
+    
+    static void inject(Object target, String fieldName, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + fieldName, e);
+        }
+    }
+    
+    static EmbeddingService embeddingService() {
+        EmbeddingService embeddingService = new EmbeddingService("http://localhost", 1, 0, 0);
+        inject(embeddingService, "normalizeEmbeddings", true);
+        return embeddingService;
+    }
+    
+    static PipelineMetrics metrics() {
+        return new PipelineMetrics(new SimpleMeterRegistry(), ObservationRegistry.NOOP);
+    }
+    
+    static float[] unitVector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        float norm = 0.0f;
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        norm = (float) Math.sqrt(norm);
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= norm;
+        }
+        return vector;
+    }
+    
+    static String text(Random random, int length) {
+        StringBuilder text = new StringBuilder(length + 16);
+        int sentence = 0;
+        while (text.length() < length) {
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+            // Sentence ends give the chunker boundaries to break at
+            text.append(++sentence % 12 == 0 ? ". " : " ");
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.documentchat.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting extracted text into overlapping chunks, from a short note to a
+ * book-sized upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChunkingBenchmark {
+    
+    @Param({"10000", "1000000"})
+    private int textLength;
+    
+    private DocumentProcessingService documentProcessingService;
+    private String text;
+    
+    @Setup
+    public void setUp() {
+        documentProcessingService = new DocumentProcessingService();
+        text = BenchmarkFixtures.text(new Random(42L), textLength);
+    }
+    
+    @Benchmark
+    public List<String> splitTextIntoChunks() {
+        return documentProcessingService.splitTextIntoChunks(text);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.documentchat.service;
+
+import com.example.documentchat.model.DocumentChunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedding (de)serialization as done when chunks are saved and when the
+ * index is loaded: the binary column, and the legacy JSON text column that is
+ * still parsed for rows not yet migrated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentChunkBenchmark {
+    
+    private float[] embedding;
+    private byte[] bytes;
+    private String legacyJson;
+    
+    @Setup
+    public void setUp() {
+        embedding = BenchmarkFixtures.unitVector(new Random(42L));
+        bytes = DocumentChunk.arrayToBytes(embedding);
+        legacyJson = toJson(embedding);
+    }
+    
+    @Benchmark
+    public byte[] serialize() {
+        return DocumentChunk.arrayToBytes(embedding);
+    }
+    
+    @Benchmark
+    public float[] deserialize() {
+        return DocumentChunk.bytesToArray(bytes);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public float[] parseLegacyJson() {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setEmbedding(legacyJson);
+        return chunk.getEmbeddingAsArray();
+    }
+    
+    private static String toJson(float[] values) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) json.append(',');
+            json.append(values[i]);
+        }
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.documentchat.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-vector scoring and the keyword-hash embedding used when no API key is
+ * configured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmbeddingBenchmark {
+    
+    private EmbeddingService embeddingService;
+    private float[] query;
+    private float[] vector;
+    private String shortQuery;
+    private String chunkText;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42L);
+        embeddingService = BenchmarkFixtures.embeddingService();
+        query = BenchmarkFixtures.unitVector(random);
+        vector = BenchmarkFixtures.unitVector(random);
+        shortQuery = "How many interviews are there in the Google process?";
+        chunkText = BenchmarkFixtures.text(random, 1000);
+    }
+    
+    @Benchmark
+    public float cosineSimilarity() {
+        return embeddingService.cosineSimilarity(query, vector);
+    }
+    
+    @Benchmark
+    public float normalizedSimilarity() {
+        return embeddingService.similarity(query, 1.0f, vector, 1.0f);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public float[] dummyEmbeddingForQuery() {
+        return embeddingService.generateDummyEmbedding(shortQuery);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public float[] dummyEmbeddingForChunk() {
+        return embeddingService.generateDummyEmbedding(chunkText);
+    }
+}
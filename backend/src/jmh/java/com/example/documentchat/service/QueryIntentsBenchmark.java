@@ -0,0 +1,40 @@
+package com.example.documentchat.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Intent classification of the offline responder for an in-scope, an
+ * off-topic and a long query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryIntentsBenchmark {
+    
+    @Param({
+        "How many interviews do I have to give?",
+        "What is the weather like today?",
+        "Can you tell me which data structures and algorithms I should study before the coding rounds of a technical interview at Google?"
+    })
+    private String query;
+    
+    @Benchmark
+    public EnumSet<QueryIntents.Intent> classify() {
+        return QueryIntents.classify(query);
+    }
+}
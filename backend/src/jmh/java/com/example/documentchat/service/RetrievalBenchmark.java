@@ -0,0 +1,75 @@
+package com.example.documentchat.service;
+
+import com.example.documentchat.index.IndexedChunk;
+import com.example.documentchat.model.Document;
+import com.example.documentchat.model.DocumentChunk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hybrid top-3 chunk selection for a chat query over an exact (brute-force)
+ * index of synthetic chunks with random unit embeddings: similarity scoring,
+ * BM25 over the chunk text and rank fusion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RetrievalBenchmark {
+    
+    @Param({"1000", "10000", "100000"})
+    private int chunkCount;
+    
+    private ChatService chatService;
+    private String query;
+    private float[] queryEmbedding;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42L);
+        EmbeddingService embeddingService = BenchmarkFixtures.embeddingService();
+        VectorIndexService vectorIndexService = new VectorIndexService();
+        BenchmarkFixtures.inject(vectorIndexService, "embeddingService", embeddingService);
+        BenchmarkFixtures.inject(vectorIndexService, "retrievalMode", "exact");
+        BenchmarkFixtures.inject(vectorIndexService, "quantization", "none");
+        
+        Document document = new Document("benchmark.txt", "txt", 0L, null);
+        document.setId(1L);
+        List<DocumentChunk> chunks = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            DocumentChunk chunk = new DocumentChunk(document, BenchmarkFixtures.text(random, 200), i,
+                    BenchmarkFixtures.unitVector(random));
+            chunk.setId((long) i + 1);
+            chunks.add(chunk);
+        }
+        vectorIndexService.addChunks(chunks);
+        
+        chatService = new ChatService("http://localhost", 1);
+        BenchmarkFixtures.inject(chatService, "vectorIndexService", vectorIndexService);
+        BenchmarkFixtures.inject(chatService, "embeddingService", embeddingService);
+        BenchmarkFixtures.inject(chatService, "metrics", BenchmarkFixtures.metrics());
+        query = "how many interview rounds focus on coding and system design";
+        queryEmbedding = BenchmarkFixtures.unitVector(random);
+    }
+    
+    @Benchmark
+    public List<IndexedChunk> findRelevantChunks() {
+        return chatService.findRelevantChunks(query, queryEmbedding);
+    }
+}
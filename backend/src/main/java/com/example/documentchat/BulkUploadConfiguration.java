@@ -0,0 +1,33 @@
+package com.example.documentchat;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+/**
+ * Serves {@code POST /api/documents/bulk} from its own dispatcher servlet, so
+ * only bulk archives may be as large as {@code ingestion.bulk.max-archive-size}.
+ * The container enforces multipart limits per servlet while it reads the
+ * request; every other endpoint keeps the {@code spring.servlet.multipart}
+ * limits of the main dispatcher servlet. Both servlets share the same handlers.
+ */
+@Configuration
+public class BulkUploadConfiguration {
+
+    @Bean
+    public ServletRegistrationBean<DispatcherServlet> bulkUploadServlet(WebApplicationContext context,
+            @Value("${ingestion.bulk.max-archive-size:1GB}") DataSize maxArchiveSize) {
+        ServletRegistrationBean<DispatcherServlet> registration =
+                new ServletRegistrationBean<>(new DispatcherServlet(context), "/api/documents/bulk");
+        registration.setName("bulkUploadDispatcherServlet");
+        // Spooled straight to disk; the archive is copied to a temporary file anyway
+        registration.setMultipartConfig(new MultipartConfigElement("", maxArchiveSize.toBytes(),
+                maxArchiveSize.toBytes(), 0));
+        return registration;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.documentchat.controller;
+
+import com.example.documentchat.model.ChatMessage;
+import com.example.documentchat.service.ChatService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@code POST /api/chat/message} with {@code chat.execution=async} (the
+ * default): the servlet thread is released while the answer is produced.
+ */
+@RestController
+@RequestMapping("/api/chat")
+@CrossOrigin(origins = "http://localhost:4200")
+@ConditionalOnProperty(name = "chat.execution", havingValue = "async", matchIfMissing = true)
+public class AsyncChatMessageController {
+    
+    @Autowired
+    private ChatService chatService;
+    
+    @PostMapping("/message")
+    public Mono<ResponseEntity<ChatMessage>> sendMessage(@RequestBody ChatMessage message) {
+        return chatService.processQuery(message.getMessage()).map(ResponseEntity::ok);
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.documentchat.controller;
+
+import com.example.documentchat.model.ChatMessage;
+import com.example.documentchat.service.ChatService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * {@code POST /api/chat/message} with {@code chat.execution=blocking}: the
+ * servlet thread waits for the answer, which is only cheap when requests run
+ * on virtual threads.
+ */
+@RestController
+@RequestMapping("/api/chat")
+@CrossOrigin(origins = "http://localhost:4200")
+@ConditionalOnProperty(name = "chat.execution", havingValue = "blocking")
+public class BlockingChatMessageController {
+    
+    @Autowired
+    private ChatService chatService;
+    
+    @PostMapping("/message")
+    public ResponseEntity<ChatMessage> sendMessage(@RequestBody ChatMessage message) {
+        return ResponseEntity.ok(chatService.processQuery(message.getMessage()).block());
+    }
+}
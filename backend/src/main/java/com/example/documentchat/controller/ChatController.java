@@ -2,10 +2,20 @@ package com.example.documentchat.controller;
 
 import com.example.documentchat.model.ChatMessage;
 import com.example.documentchat.service.ChatService;
+import com.example.documentchat.service.EmbeddingService;
+import com.example.documentchat.service.QueryEmbeddingCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
+/**
+ * Chat endpoints. {@code POST /api/chat/message} is served by
+ * {@link AsyncChatMessageController} or {@link BlockingChatMessageController},
+ * whichever {@code chat.execution} selects.
+ */
 @RestController
 @RequestMapping("/api/chat")
 @CrossOrigin(origins = "http://localhost:4200")
@@ -14,9 +24,22 @@ public class ChatController {
     @Autowired
     private ChatService chatService;
     
-    @PostMapping("/message")
-    public ResponseEntity<ChatMessage> sendMessage(@RequestBody ChatMessage message) {
-        ChatMessage response = chatService.processQuery(message.getMessage());
-        return ResponseEntity.ok(response);
+    @Autowired
+    private EmbeddingService embeddingService;
+    
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamMessage(@RequestBody ChatMessage message) {
+        return chatService.streamQuery(message.getMessage());
+    }
+    
+    @GetMapping("/query-cache")
+    public ResponseEntity<QueryEmbeddingCache.Stats> getQueryCacheStats() {
+        return ResponseEntity.ok(embeddingService.getQueryCacheStats());
+    }
+    
+    @DeleteMapping("/query-cache")
+    public ResponseEntity<Void> clearQueryCache() {
+        embeddingService.invalidateQueryEmbeddings();
+        return ResponseEntity.noContent().build();
     }
 }
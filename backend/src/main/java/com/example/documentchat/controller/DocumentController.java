@@ -1,53 +1,167 @@
 package com.example.documentchat.controller;
 
-import com.example.documentchat.model.Document;
+import com.example.documentchat.model.BulkIngestionJob;
+import com.example.documentchat.model.DocumentSummary;
+import com.example.documentchat.model.IngestionJob;
+import com.example.documentchat.service.BulkIngestionService;
 import com.example.documentchat.service.DocumentProcessingService;
+import com.example.documentchat.service.IngestionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/documents")
 @CrossOrigin(origins = "http://localhost:4200")
 public class DocumentController {
     
+    private static final Set<String> SORTABLE = Set.of("id", "fileName", "fileType", "fileSize", "uploadTime");
+    
     @Autowired
     private DocumentProcessingService documentProcessingService;
     
+    @Autowired
+    private IngestionService ingestionService;
+    
+    @Autowired
+    private BulkIngestionService bulkIngestionService;
+    
     @PostMapping("/upload")
-    public ResponseEntity<Document> uploadDocument(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<IngestionJob> uploadDocument(@RequestParam("file") MultipartFile file) {
         try {
             if (file.isEmpty()) {
                 return ResponseEntity.badRequest().build();
             }
             
             String fileName = file.getOriginalFilename();
-            if (fileName == null || (!fileName.toLowerCase().endsWith(".pdf") && 
-                                   !fileName.toLowerCase().endsWith(".docx") && 
-                                   !fileName.toLowerCase().endsWith(".txt"))) {
+            if (!isSupported(fileName)) {
+                return ResponseEntity.badRequest().build();
+            }
+            
+            // Processing continues in the background; poll the job for progress
+            IngestionJob job = ingestionService.submit(fileName, file.getBytes());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * Replaces the file of an existing document. Chunks whose text is already
+     * stored for the document are kept as they are; only new or changed chunks
+     * are embedded and indexed.
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<IngestionJob> replaceDocument(@PathVariable Long id,
+                                                       @RequestParam("file") MultipartFile file) {
+        try {
+            if (file.isEmpty() || !isSupported(file.getOriginalFilename())) {
                 return ResponseEntity.badRequest().build();
             }
+            if (!documentProcessingService.documentExists(id)) {
+                return ResponseEntity.notFound().build();
+            }
             
-            Document document = documentProcessingService.processDocument(file);
-            return ResponseEntity.ok(document);
+            IngestionJob job = ingestionService.submitReplacement(id, file.getOriginalFilename(), file.getBytes());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+    
+    /**
+     * Ingests every PDF, DOCX and TXT file in an uploaded ZIP archive
+     * ({@code file}) or below a server-local directory ({@code path}).
+     */
+    @PostMapping("/bulk")
+    public ResponseEntity<BulkIngestionJob> bulkIngest(@RequestParam(value = "file", required = false) MultipartFile file,
+                                                       @RequestParam(value = "path", required = false) String path) {
+        try {
+            if (file != null && !file.isEmpty() && file.getOriginalFilename() != null
+                    && file.getOriginalFilename().toLowerCase().endsWith(".zip")) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkIngestionService.submitArchive(file));
+            }
+            if (file == null && path != null && !path.isBlank()) {
+                return ResponseEntity.status(HttpStatus.ACCEPTED).body(bulkIngestionService.submitDirectory(path));
+            }
+            return ResponseEntity.badRequest().build();
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
     }
     
+    @GetMapping("/bulk/{id}")
+    public ResponseEntity<BulkIngestionJob> getBulkIngestionJob(@PathVariable String id) {
+        return bulkIngestionService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<IngestionJob> getIngestionJob(@PathVariable String id) {
+        return ingestionService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    /**
+     * Lists documents a page at a time, newest first unless {@code sort} names
+     * one of {@link #SORTABLE} ({@code ?page=0&size=20&sort=fileName,asc}).
+     */
     @GetMapping
-    public ResponseEntity<List<Document>> getAllDocuments() {
-        List<Document> documents = documentProcessingService.getAllDocuments();
-        return ResponseEntity.ok(documents);
+    public ResponseEntity<Page<DocumentSummary>> getDocuments(
+            @PageableDefault(size = 20, sort = "uploadTime", direction = Sort.Direction.DESC) Pageable pageable) {
+        for (Sort.Order order : pageable.getSort()) {
+            if (!SORTABLE.contains(order.getProperty())) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+        return ResponseEntity.ok(documentProcessingService.listDocuments(pageable));
+    }
+    
+    @GetMapping(value = "/{id}/text", produces = "text/plain;charset=UTF-8")
+    public ResponseEntity<String> getDocumentText(@PathVariable Long id) {
+        // Reassembled from the chunks unless the text was kept (ingestion.store-extracted-text=true)
+        return documentProcessingService.getExtractedText(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
     
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteDocument(@PathVariable Long id) {
-        documentProcessingService.deleteDocument(id);
-        return ResponseEntity.ok().build();
+        try {
+            ingestionService.delete(id);
+            return ResponseEntity.ok().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+    
+    private boolean isSupported(String fileName) {
+        return fileName != null && (fileName.toLowerCase().endsWith(".pdf") ||
+                                    fileName.toLowerCase().endsWith(".docx") ||
+                                    fileName.toLowerCase().endsWith(".txt"));
     }
 }
@@ -0,0 +1,253 @@
+package com.example.documentchat.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over chunk text scored with Okapi BM25, so that lexical
+ * retrieval only touches the posting lists of the query's terms.
+ *
+ * <p>Text is lowercased and split into letter/digit runs; common English stop
+ * words and single letters are dropped and a trailing plural {@code s} is
+ * stripped, so "interviews" matches "interview". Documents are added and
+ * removed incrementally; removal compacts only the posting lists of the terms
+ * the removed documents contained.
+ */
+public class Bm25Index {
+    
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "but", "by", "can", "did", "do", "does", "for", "from",
+        "had", "has", "have", "how", "i", "if", "in", "into", "is", "it", "its", "me", "my", "of", "on", "or",
+        "our", "so", "that", "the", "their", "them", "then", "there", "these", "they", "this", "to", "was",
+        "we", "were", "what", "when", "where", "which", "who", "why", "will", "with", "would", "you", "your"
+    );
+    
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private int documentCount;
+    private long totalLength;
+    
+    public void add(long id, String text) {
+        List<String> terms = tokenize(text);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                postings.computeIfAbsent(entry.getKey(), term -> new Postings()).add(id, entry.getValue(), terms.size());
+            }
+            documentCount++;
+            totalLength += terms.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Removes the documents in {@code textsById}, which must hold the same text
+     * each was added with.
+     */
+    public void removeAll(Map<Long, String> textsById) {
+        if (textsById.isEmpty()) {
+            return;
+        }
+        Set<String> terms = new HashSet<>();
+        long removedLength = 0;
+        for (String text : textsById.values()) {
+            List<String> tokens = tokenize(text);
+            terms.addAll(tokens);
+            removedLength += tokens.size();
+        }
+        lock.writeLock().lock();
+        try {
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list != null && list.removeAll(textsById.keySet()) == 0) {
+                    postings.remove(term);
+                }
+            }
+            documentCount -= textsById.size();
+            totalLength -= removedLength;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns the ids of the {@code limit} best-scoring documents for
+     * {@code query}, best first. Documents sharing no term with the query are
+     * never returned.
+     */
+    public long[] search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            if (documentCount == 0 || terms.isEmpty()) {
+                return new long[0];
+            }
+            float averageLength = (float) totalLength / documentCount;
+            ScoreTable scores = new ScoreTable();
+            for (String term : terms) {
+                Postings list = postings.get(term);
+                if (list == null) {
+                    continue;
+                }
+                float idf = (float) Math.log(1.0 + (documentCount - list.size + 0.5) / (list.size + 0.5));
+                for (int i = 0; i < list.size; i++) {
+                    int tf = list.frequencies[i];
+                    float lengthNorm = K1 * (1 - B + B * list.lengths[i] / averageLength);
+                    scores.add(list.ids[i], idf * tf * (K1 + 1) / (tf + lengthNorm));
+                }
+            }
+            TopScores<Long> top = new TopScores<>(limit);
+            for (int slot = 0; slot < scores.keys.length; slot++) {
+                if (scores.used[slot]) {
+                    top.offer(scores.keys[slot], scores.values[slot]);
+                }
+            }
+            List<Long> ranked = top.toSortedList();
+            long[] ids = new long[ranked.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = ranked.get(i);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documentCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = lower.substring(start, i);
+                start = -1;
+                if (STOP_WORDS.contains(token) || (token.length() == 1 && !Character.isDigit(token.charAt(0)))) {
+                    continue;
+                }
+                tokens.add(stem(token));
+            }
+        }
+        return tokens;
+    }
+    
+    private static String stem(String token) {
+        if (token.length() > 3 && token.endsWith("s") && !token.endsWith("ss")) {
+            return token.substring(0, token.length() - 1);
+        }
+        return token;
+    }
+    
+    // One term's documents with their term frequency and length
+    private static final class Postings {
+        long[] ids = new long[4];
+        int[] frequencies = new int[4];
+        int[] lengths = new int[4];
+        int size;
+        
+        void add(long id, int frequency, int length) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            ids[size] = id;
+            frequencies[size] = frequency;
+            lengths[size] = length;
+            size++;
+        }
+        
+        // Returns the number of postings left
+        int removeAll(Set<Long> removed) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed.contains(ids[i])) {
+                    ids[kept] = ids[i];
+                    frequencies[kept] = frequencies[i];
+                    lengths[kept] = lengths[i];
+                    kept++;
+                }
+            }
+            size = kept;
+            return kept;
+        }
+    }
+    
+    // Open-addressing accumulator of per-document scores for one query
+    private static final class ScoreTable {
+        long[] keys = new long[64];
+        float[] values = new float[64];
+        boolean[] used = new boolean[64];
+        int size;
+        
+        void add(long key, float value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int slot = find(keys, used, key);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] += value;
+        }
+        
+        private void grow() {
+            long[] oldKeys = keys;
+            float[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new float[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    int slot = find(keys, used, oldKeys[i]);
+                    used[slot] = true;
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+        
+        private static int find(long[] keys, boolean[] used, long key) {
+            int mask = keys.length - 1;
+            int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
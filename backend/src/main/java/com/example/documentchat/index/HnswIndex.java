@@ -0,0 +1,413 @@
+package com.example.documentchat.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+
+/**
+ * Hierarchical Navigable Small World graph for approximate nearest-neighbour
+ * search by cosine similarity.
+ *
+ * <p>{@code m} is the number of links kept per node on the upper layers (layer 0
+ * keeps {@code 2 * m}), {@code efConstruction} is the beam width used while
+ * linking new nodes and the {@code ef} passed to {@link #search} is the beam
+ * width used at query time. Larger values trade latency for recall.
+ *
+ * <p>Removal only tombstones a node: it keeps routing searches but is never
+ * returned. Call {@link #tombstoneRatio()} to decide when a rebuild is due.
+ *
+ * <p>{@link #writeTo} saves the graph structure so that {@link #readFrom} can
+ * restore it without re-linking every node. Vectors of live nodes are not
+ * written; the caller supplies them again when reading.
+ */
+public class HnswIndex {
+    
+    private final int m;
+    private final int maxLinksLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<Long, Integer> nodeById = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int deletedCount = 0;
+    
+    public HnswIndex(int m, int efConstruction) {
+        this(m, efConstruction, 42L);
+    }
+    
+    public HnswIndex(int m, int efConstruction, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        this.m = m;
+        this.maxLinksLayer0 = 2 * m;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+    }
+    
+    public void add(long id, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = nodeById.get(id);
+            if (existing != null && !nodes.get(existing).deleted) {
+                return;
+            }
+            
+            int level = (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+            int nodeIndex = nodes.size();
+            Node node = new Node(id, vector, level, m, maxLinksLayer0);
+            nodes.add(node);
+            nodeById.put(id, nodeIndex);
+            
+            if (entryPoint < 0) {
+                entryPoint = nodeIndex;
+                maxLevel = level;
+                return;
+            }
+            
+            // Greedy descent through the layers above the new node's top layer
+            int current = entryPoint;
+            for (int layer = maxLevel; layer > level; layer--) {
+                current = greedyClosest(vector, node.norm, current, layer);
+            }
+            
+            List<Integer> entryPoints = List.of(current);
+            for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+                PriorityQueue<Scored> found = searchLayer(vector, node.norm, entryPoints, efConstruction, layer);
+                List<Scored> best = closestFirst(found);
+                int maxLinks = layer == 0 ? maxLinksLayer0 : m;
+                for (int neighbour : selectNeighbours(best, m)) {
+                    node.addLink(layer, neighbour);
+                    connect(neighbour, nodeIndex, layer, maxLinks);
+                }
+                entryPoints = new ArrayList<>(best.size());
+                for (Scored scored : best) {
+                    entryPoints.add(scored.node);
+                }
+            }
+            
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = nodeIndex;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer nodeIndex = nodeById.remove(id);
+            if (nodeIndex != null && !nodes.get(nodeIndex).deleted) {
+                nodes.get(nodeIndex).deleted = true;
+                deletedCount++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Returns the ids of up to {@code k} live nodes closest to {@code query},
+     * best first, exploring with a beam of width {@code max(ef, k)}.
+     */
+    public long[] search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return new long[0];
+            }
+            float queryNorm = VectorOps.norm(query);
+            int current = entryPoint;
+            for (int layer = maxLevel; layer > 0; layer--) {
+                current = greedyClosest(query, queryNorm, current, layer);
+            }
+            // Widen the beam by the tombstones so deleted nodes don't eat into k
+            int beam = Math.max(ef, k) + Math.min(deletedCount, Math.max(ef, k));
+            List<Scored> best = closestFirst(searchLayer(query, queryNorm, List.of(current), beam, 0));
+            
+            long[] ids = new long[Math.min(k, best.size())];
+            int count = 0;
+            for (Scored scored : best) {
+                Node node = nodes.get(scored.node);
+                if (node.deleted) {
+                    continue;
+                }
+                ids[count++] = node.id;
+                if (count == ids.length) {
+                    break;
+                }
+            }
+            return count == ids.length ? ids : Arrays.copyOf(ids, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size() - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public double tombstoneRatio() {
+        lock.readLock().lock();
+        try {
+            return nodes.isEmpty() ? 0.0 : (double) deletedCount / nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public void writeTo(DataOutput out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(entryPoint);
+            out.writeInt(maxLevel);
+            out.writeInt(nodes.size());
+            for (Node node : nodes) {
+                out.writeLong(node.id);
+                out.writeBoolean(node.deleted);
+                if (node.deleted) {
+                    // Tombstones still route searches but their vectors are gone from the caller
+                    out.writeInt(node.vector.length);
+                    for (float value : node.vector) {
+                        out.writeFloat(value);
+                    }
+                }
+                out.writeInt(node.links.length);
+                for (int layer = 0; layer < node.links.length; layer++) {
+                    out.writeInt(node.linkCounts[layer]);
+                    for (int i = 0; i < node.linkCounts[layer]; i++) {
+                        out.writeInt(node.links[layer][i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Restores a graph saved by {@link #writeTo}, taking the vector of each live
+     * node from {@code vectors}. Fails if a live node has no vector.
+     */
+    public static HnswIndex readFrom(DataInput in, LongFunction<float[]> vectors) throws IOException {
+        int m = in.readInt();
+        int efConstruction = in.readInt();
+        int entryPoint = in.readInt();
+        int maxLevel = in.readInt();
+        int count = in.readInt();
+        HnswIndex index = new HnswIndex(m, efConstruction, 42L + count);
+        for (int nodeIndex = 0; nodeIndex < count; nodeIndex++) {
+            long id = in.readLong();
+            boolean deleted = in.readBoolean();
+            float[] vector;
+            if (deleted) {
+                vector = new float[in.readInt()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = in.readFloat();
+                }
+            } else {
+                vector = vectors.apply(id);
+                if (vector == null) {
+                    throw new IOException("No vector for graph node " + id);
+                }
+            }
+            int level = in.readInt() - 1;
+            Node node = new Node(id, vector, level, m, 2 * m);
+            for (int layer = 0; layer <= level; layer++) {
+                int linkCount = in.readInt();
+                for (int i = 0; i < linkCount; i++) {
+                    node.addLink(layer, in.readInt());
+                }
+            }
+            node.deleted = deleted;
+            index.nodes.add(node);
+            if (deleted) {
+                index.deletedCount++;
+            } else {
+                index.nodeById.put(id, nodeIndex);
+            }
+        }
+        index.entryPoint = entryPoint;
+        index.maxLevel = maxLevel;
+        return index;
+    }
+    
+    private int greedyClosest(float[] query, float queryNorm, int start, int layer) {
+        int current = start;
+        float currentSimilarity = similarity(query, queryNorm, nodes.get(current));
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            Node node = nodes.get(current);
+            for (int i = 0; i < node.linkCounts[layer]; i++) {
+                int candidate = node.links[layer][i];
+                float candidateSimilarity = similarity(query, queryNorm, nodes.get(candidate));
+                if (candidateSimilarity > currentSimilarity) {
+                    current = candidate;
+                    currentSimilarity = candidateSimilarity;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+    
+    // Returns a min-heap (worst on top) of the ef closest nodes found on the layer
+    private PriorityQueue<Scored> searchLayer(float[] query, float queryNorm, List<Integer> entryPoints, int ef, int layer) {
+        BitSet visited = new BitSet(nodes.size());
+        PriorityQueue<Scored> candidates = new PriorityQueue<>((a, b) -> Float.compare(b.similarity, a.similarity));
+        PriorityQueue<Scored> results = new PriorityQueue<>((a, b) -> Float.compare(a.similarity, b.similarity));
+        
+        for (int entry : entryPoints) {
+            visited.set(entry);
+            Scored scored = new Scored(entry, similarity(query, queryNorm, nodes.get(entry)));
+            candidates.add(scored);
+            results.add(scored);
+        }
+        
+        while (!candidates.isEmpty()) {
+            Scored closest = candidates.poll();
+            if (results.size() >= ef && closest.similarity < results.peek().similarity) {
+                break;
+            }
+            Node node = nodes.get(closest.node);
+            for (int i = 0; i < node.linkCounts[layer]; i++) {
+                int neighbour = node.links[layer][i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float neighbourSimilarity = similarity(query, queryNorm, nodes.get(neighbour));
+                if (results.size() < ef || neighbourSimilarity > results.peek().similarity) {
+                    Scored scored = new Scored(neighbour, neighbourSimilarity);
+                    candidates.add(scored);
+                    results.add(scored);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+    
+    private void connect(int from, int to, int layer, int maxLinks) {
+        Node node = nodes.get(from);
+        if (node.linkCounts[layer] < maxLinks) {
+            node.addLink(layer, to);
+            return;
+        }
+        // Over capacity: re-select the neighbourhood from the old links plus the new one
+        List<Scored> neighbours = new ArrayList<>(node.linkCounts[layer] + 1);
+        neighbours.add(new Scored(to, similarity(node.vector, node.norm, nodes.get(to))));
+        for (int i = 0; i < node.linkCounts[layer]; i++) {
+            int neighbour = node.links[layer][i];
+            neighbours.add(new Scored(neighbour, similarity(node.vector, node.norm, nodes.get(neighbour))));
+        }
+        neighbours.sort((a, b) -> Float.compare(b.similarity, a.similarity));
+        node.linkCounts[layer] = 0;
+        for (int neighbour : selectNeighbours(neighbours, maxLinks)) {
+            node.addLink(layer, neighbour);
+        }
+    }
+    
+    /**
+     * Neighbour selection heuristic from the HNSW paper: walking the candidates
+     * closest first, keep one only if it is closer to the base node than to any
+     * neighbour already kept, so links spread out in different directions. Slots
+     * left over are filled with the closest rejected candidates.
+     */
+    private int[] selectNeighbours(List<Scored> closestFirst, int maxLinks) {
+        int[] selected = new int[Math.min(maxLinks, closestFirst.size())];
+        int count = 0;
+        List<Scored> rejected = new ArrayList<>();
+        for (Scored candidate : closestFirst) {
+            if (count == selected.length) {
+                break;
+            }
+            Node candidateNode = nodes.get(candidate.node);
+            boolean diverse = true;
+            for (int i = 0; i < count; i++) {
+                Node kept = nodes.get(selected[i]);
+                if (similarity(candidateNode.vector, candidateNode.norm, kept) > candidate.similarity) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidate.node;
+            } else {
+                rejected.add(candidate);
+            }
+        }
+        for (int i = 0; i < rejected.size() && count < selected.length; i++) {
+            selected[count++] = rejected.get(i).node;
+        }
+        return selected;
+    }
+    
+    private static List<Scored> closestFirst(PriorityQueue<Scored> heap) {
+        List<Scored> sorted = new ArrayList<>(heap);
+        sorted.sort((a, b) -> Float.compare(b.similarity, a.similarity));
+        return sorted;
+    }
+    
+    private static float similarity(float[] query, float queryNorm, Node node) {
+        if (queryNorm == 0.0f || node.norm == 0.0f) {
+            return 0.0f;
+        }
+        return VectorOps.cosine(query, queryNorm, node.vector, node.norm);
+    }
+    
+    private static final class Node {
+        final long id;
+        final float[] vector;
+        final float norm;
+        final int[][] links;
+        final int[] linkCounts;
+        boolean deleted;
+        
+        Node(long id, float[] vector, int level, int m, int maxLinksLayer0) {
+            this.id = id;
+            this.vector = vector;
+            this.norm = VectorOps.norm(vector);
+            this.links = new int[level + 1][];
+            this.linkCounts = new int[level + 1];
+            for (int layer = 0; layer <= level; layer++) {
+                links[layer] = new int[layer == 0 ? maxLinksLayer0 : m];
+            }
+        }
+        
+        void addLink(int layer, int neighbour) {
+            links[layer][linkCounts[layer]++] = neighbour;
+        }
+    }
+    
+    private record Scored(int node, float similarity) {
+    }
+}
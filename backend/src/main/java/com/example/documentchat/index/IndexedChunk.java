@@ -0,0 +1,73 @@
+package com.example.documentchat.index;
+
+/**
+ * Resident copy of a {@code DocumentChunk} held by the vector index so that
+ * queries never have to go back to the database to score chunks.
+ *
+ * <p>When the index runs with a {@link VectorQuantizer} only the compressed
+ * {@code codes} are resident and {@link #getEmbedding()} is null, except on
+ * the copies returned for exact re-ranking (see {@link #withEmbedding}).
+ */
+public class IndexedChunk {
+    private final Long id;
+    private final Long documentId;
+    private final int chunkIndex;
+    private final String text;
+    private final float[] embedding;
+    private final byte[] codes;
+    private final float norm;
+    
+    public IndexedChunk(Long id, Long documentId, int chunkIndex, String text, float[] embedding) {
+        this(id, documentId, chunkIndex, text, embedding, null, VectorOps.norm(embedding));
+    }
+    
+    public IndexedChunk(Long id, Long documentId, int chunkIndex, String text, byte[] codes, float norm) {
+        this(id, documentId, chunkIndex, text, null, codes, norm);
+    }
+    
+    private IndexedChunk(Long id, Long documentId, int chunkIndex, String text, float[] embedding, byte[] codes, float norm) {
+        this.id = id;
+        this.documentId = documentId;
+        this.chunkIndex = chunkIndex;
+        this.text = text;
+        this.embedding = embedding;
+        this.codes = codes;
+        this.norm = norm;
+    }
+    
+    public IndexedChunk withEmbedding(float[] embedding) {
+        return new IndexedChunk(id, documentId, chunkIndex, text, embedding, codes, norm);
+    }
+    
+    public IndexedChunk withChunkIndex(int chunkIndex) {
+        return new IndexedChunk(id, documentId, chunkIndex, text, embedding, codes, norm);
+    }
+    
+    public Long getId() {
+        return id;
+    }
+    
+    public Long getDocumentId() {
+        return documentId;
+    }
+    
+    public int getChunkIndex() {
+        return chunkIndex;
+    }
+    
+    public String getText() {
+        return text;
+    }
+    
+    public float[] getEmbedding() {
+        return embedding;
+    }
+    
+    public byte[] getCodes() {
+        return codes;
+    }
+    
+    public float getNorm() {
+        return norm;
+    }
+}
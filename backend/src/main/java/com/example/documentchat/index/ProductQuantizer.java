@@ -0,0 +1,194 @@
+package com.example.documentchat.index;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Product quantization: vectors are split into {@code subspaces} equal slices
+ * and each slice is replaced by the index of its nearest of 256 k-means
+ * centroids, so a vector costs one byte per subspace (96 bytes for 768 dims
+ * with 96 subspaces, 32x smaller than float32).
+ *
+ * <p>Queries build a {@code subspaces x 256} table of partial dot products
+ * once, after which scoring a code is {@code subspaces} table lookups.
+ */
+public class ProductQuantizer implements VectorQuantizer {
+    
+    private static final int CENTROIDS = 256;
+    
+    private final int dimension;
+    private final int subspaces;
+    private final int subDimension;
+    // [subspace][centroid * subDimension + d]
+    private final float[][] codebooks;
+    
+    private ProductQuantizer(int dimension, int subspaces, float[][] codebooks) {
+        this.dimension = dimension;
+        this.subspaces = subspaces;
+        this.subDimension = dimension / subspaces;
+        this.codebooks = codebooks;
+    }
+    
+    /**
+     * Trains one k-means codebook per subspace on {@code samples}. Needs at
+     * least 256 samples and a dimension divisible by {@code subspaces}.
+     */
+    public static ProductQuantizer train(List<float[]> samples, int subspaces, int iterations, long seed) {
+        if (samples.size() < CENTROIDS) {
+            throw new IllegalArgumentException("At least " + CENTROIDS + " samples are required to train");
+        }
+        int dimension = samples.get(0).length;
+        if (subspaces <= 0 || dimension % subspaces != 0) {
+            throw new IllegalArgumentException("Dimension " + dimension + " is not divisible by " + subspaces + " subspaces");
+        }
+        int subDimension = dimension / subspaces;
+        float[][] codebooks = new float[subspaces][];
+        IntStream.range(0, subspaces).parallel().forEach(subspace ->
+                codebooks[subspace] = kMeans(samples, subspace * subDimension, subDimension, iterations, new Random(seed + subspace)));
+        return new ProductQuantizer(dimension, subspaces, codebooks);
+    }
+    
+    @Override
+    public byte[] encode(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected " + dimension + " dimensions but got " + vector.length);
+        }
+        byte[] codes = new byte[subspaces];
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            codes[subspace] = (byte) nearestCentroid(codebooks[subspace], vector, subspace * subDimension, subDimension);
+        }
+        return codes;
+    }
+    
+    @Override
+    public float[] decode(byte[] codes) {
+        float[] vector = new float[dimension];
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            System.arraycopy(codebooks[subspace], (codes[subspace] & 0xFF) * subDimension,
+                    vector, subspace * subDimension, subDimension);
+        }
+        return vector;
+    }
+    
+    @Override
+    public Scorer scorer(float[] query) {
+        float[] table = new float[subspaces * CENTROIDS];
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            float[] codebook = codebooks[subspace];
+            int offset = subspace * subDimension;
+            for (int centroid = 0; centroid < CENTROIDS; centroid++) {
+                float dot = 0.0f;
+                int base = centroid * subDimension;
+                for (int d = 0; d < subDimension; d++) {
+                    dot += query[offset + d] * codebook[base + d];
+                }
+                table[subspace * CENTROIDS + centroid] = dot;
+            }
+        }
+        return codes -> {
+            float sum = 0.0f;
+            for (int subspace = 0; subspace < codes.length; subspace++) {
+                sum += table[subspace * CENTROIDS + (codes[subspace] & 0xFF)];
+            }
+            return sum;
+        };
+    }
+    
+    public int getDimension() {
+        return dimension;
+    }
+    
+    public int getSubspaces() {
+        return subspaces;
+    }
+    
+    /**
+     * Writes the trained codebooks, so that {@link #readFrom} restores a
+     * quantizer producing the same codes without training again.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(dimension);
+        out.writeInt(subspaces);
+        for (float[] codebook : codebooks) {
+            for (float value : codebook) {
+                out.writeFloat(value);
+            }
+        }
+    }
+    
+    public static ProductQuantizer readFrom(DataInput in) throws IOException {
+        int dimension = in.readInt();
+        int subspaces = in.readInt();
+        if (subspaces <= 0 || dimension % subspaces != 0) {
+            throw new IOException("Invalid product quantizer shape " + dimension + "/" + subspaces);
+        }
+        float[][] codebooks = new float[subspaces][CENTROIDS * (dimension / subspaces)];
+        for (float[] codebook : codebooks) {
+            for (int i = 0; i < codebook.length; i++) {
+                codebook[i] = in.readFloat();
+            }
+        }
+        return new ProductQuantizer(dimension, subspaces, codebooks);
+    }
+    
+    private static float[] kMeans(List<float[]> samples, int offset, int subDimension, int iterations, Random random) {
+        float[] centroids = new float[CENTROIDS * subDimension];
+        for (int centroid = 0; centroid < CENTROIDS; centroid++) {
+            float[] sample = samples.get(random.nextInt(samples.size()));
+            System.arraycopy(sample, offset, centroids, centroid * subDimension, subDimension);
+        }
+        
+        int[] assignment = new int[samples.size()];
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int i = 0; i < samples.size(); i++) {
+                assignment[i] = nearestCentroid(centroids, samples.get(i), offset, subDimension);
+            }
+            
+            float[] sums = new float[centroids.length];
+            int[] counts = new int[CENTROIDS];
+            for (int i = 0; i < samples.size(); i++) {
+                float[] sample = samples.get(i);
+                int base = assignment[i] * subDimension;
+                for (int d = 0; d < subDimension; d++) {
+                    sums[base + d] += sample[offset + d];
+                }
+                counts[assignment[i]]++;
+            }
+            for (int centroid = 0; centroid < CENTROIDS; centroid++) {
+                int base = centroid * subDimension;
+                if (counts[centroid] == 0) {
+                    // Re-seed empty clusters from a random sample
+                    float[] sample = samples.get(random.nextInt(samples.size()));
+                    System.arraycopy(sample, offset, centroids, base, subDimension);
+                    continue;
+                }
+                for (int d = 0; d < subDimension; d++) {
+                    centroids[base + d] = sums[base + d] / counts[centroid];
+                }
+            }
+        }
+        return centroids;
+    }
+    
+    private static int nearestCentroid(float[] centroids, float[] vector, int offset, int subDimension) {
+        int best = 0;
+        float bestDistance = Float.MAX_VALUE;
+        for (int centroid = 0; centroid < CENTROIDS; centroid++) {
+            int base = centroid * subDimension;
+            float distance = 0.0f;
+            for (int d = 0; d < subDimension; d++) {
+                float diff = vector[offset + d] - centroids[base + d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = centroid;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.documentchat.index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the {@code capacity} highest-scoring items offered to it in a
+ * primitive-backed min-heap, so selecting the top k of n items is
+ * O(n log k) without boxing the scores.
+ */
+public class TopScores<T> {
+    
+    private final Object[] items;
+    private final float[] scores;
+    private int size;
+    
+    public TopScores(int capacity) {
+        this.items = new Object[Math.max(capacity, 0)];
+        this.scores = new float[Math.max(capacity, 0)];
+    }
+    
+    public void offer(T item, float score) {
+        if (items.length == 0) {
+            return;
+        }
+        if (size < items.length) {
+            items[size] = item;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (Float.compare(score, scores[0]) > 0) {
+            items[0] = item;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Returns the retained items, highest score first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> toSortedList() {
+        List<Integer> slots = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            slots.add(i);
+        }
+        slots.sort((a, b) -> Float.compare(scores[b], scores[a]));
+        List<T> result = new ArrayList<>(size);
+        for (int slot : slots) {
+            result.add((T) items[slot]);
+        }
+        return result;
+    }
+    
+    private void siftUp(int slot) {
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (Float.compare(scores[slot], scores[parent]) >= 0) {
+                break;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+    }
+    
+    private void siftDown(int slot) {
+        while (true) {
+            int smallest = slot;
+            int left = 2 * slot + 1;
+            int right = left + 1;
+            if (left < size && Float.compare(scores[left], scores[smallest]) < 0) {
+                smallest = left;
+            }
+            if (right < size && Float.compare(scores[right], scores[smallest]) < 0) {
+                smallest = right;
+            }
+            if (smallest == slot) {
+                return;
+            }
+            swap(slot, smallest);
+            slot = smallest;
+        }
+    }
+    
+    private void swap(int a, int b) {
+        Object item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
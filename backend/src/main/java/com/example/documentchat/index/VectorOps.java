@@ -0,0 +1,90 @@
+package com.example.documentchat.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Similarity kernels used on every query. When the JVM was started with
+ * {@code --add-modules jdk.incubator.vector} the SIMD kernel is used, otherwise
+ * (or with {@code -Dvector.simd.disabled=true}) a scalar loop.
+ */
+public final class VectorOps {
+    
+    private static final Logger log = LoggerFactory.getLogger(VectorOps.class);
+    
+    interface Kernel {
+        float dot(float[] a, float[] b);
+    }
+    
+    private static final Kernel KERNEL = loadKernel();
+    
+    private VectorOps() {}
+    
+    public static float dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Arrays must have the same length");
+        }
+        return KERNEL.dot(a, b);
+    }
+    
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(KERNEL.dot(vector, vector));
+    }
+    
+    /**
+     * Cosine similarity from precomputed norms, i.e. a single dot product. As
+     * with the plain formula, a zero vector on either side yields NaN.
+     */
+    public static float cosine(float[] a, float normA, float[] b, float normB) {
+        return dot(a, b) / (normA * normB);
+    }
+    
+    public static float cosine(float[] a, float[] b) {
+        return cosine(a, norm(a), b, norm(b));
+    }
+    
+    /**
+     * Scales {@code vector} to unit length in place; zero vectors are left as is.
+     */
+    public static float[] normalize(float[] vector) {
+        float norm = norm(vector);
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= norm;
+            }
+        }
+        return vector;
+    }
+    
+    public static boolean isSimdEnabled() {
+        return !(KERNEL instanceof ScalarKernel);
+    }
+    
+    private static Kernel loadKernel() {
+        if (Boolean.getBoolean("vector.simd.disabled")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarKernel();
+        }
+        try {
+            // Loaded reflectively so this class still links without the incubator module
+            Kernel kernel = (Kernel) Class.forName("com.example.documentchat.index.SimdKernel")
+                    .getDeclaredConstructor().newInstance();
+            log.info("Using SIMD similarity kernel");
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.warn("SIMD similarity kernel unavailable, falling back to scalar: {}", e.toString());
+            return new ScalarKernel();
+        }
+    }
+    
+    static final class ScalarKernel implements Kernel {
+        @Override
+        public float dot(float[] a, float[] b) {
+            float sum = 0.0f;
+            for (int i = 0; i < a.length; i++) {
+                sum += a[i] * b[i];
+            }
+            return sum;
+        }
+    }
+}
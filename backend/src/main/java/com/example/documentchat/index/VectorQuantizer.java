@@ -0,0 +1,22 @@
+package com.example.documentchat.index;
+
+/**
+ * Lossy compressed representation of embeddings. Stored vectors are encoded
+ * to bytes once; at query time a {@link Scorer} approximates the dot product
+ * between the full-precision query and each code.
+ */
+public interface VectorQuantizer {
+    
+    byte[] encode(float[] vector);
+    
+    /**
+     * The approximate vector that {@code codes} stand for.
+     */
+    float[] decode(byte[] codes);
+    
+    Scorer scorer(float[] query);
+    
+    interface Scorer {
+        float score(byte[] codes);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.documentchat.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one bulk ingestion of a ZIP archive or server-local directory.
+ * Each supported file becomes a document; the counters cover every file seen
+ * so far, and the rates are averaged over the time since the job started.
+ */
+public class BulkIngestionJob {
+    
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+    
+    // Failures listed individually; further ones are only counted
+    private static final int MAX_REPORTED_FAILURES = 100;
+    
+    private final String id;
+    private final String source;
+    private final LocalDateTime submittedAt;
+    private volatile Status status;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile boolean discoveryFinished;
+    private final AtomicInteger discoveredDocuments = new AtomicInteger();
+    private final AtomicInteger skippedFiles = new AtomicInteger();
+    private final AtomicInteger completedDocuments = new AtomicInteger();
+    private final AtomicInteger duplicateDocuments = new AtomicInteger();
+    private final AtomicInteger failedDocuments = new AtomicInteger();
+    private final AtomicLong persistedChunks = new AtomicLong();
+    private final Map<String, String> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile String error;
+    private volatile LocalDateTime completedAt;
+    
+    public BulkIngestionJob(String source) {
+        this.id = UUID.randomUUID().toString();
+        this.source = source;
+        this.submittedAt = LocalDateTime.now();
+        this.status = Status.QUEUED;
+    }
+    
+    public void start() {
+        this.startedNanos = System.nanoTime();
+        this.status = Status.RUNNING;
+    }
+    
+    public void complete() {
+        finish(Status.COMPLETED);
+    }
+    
+    public void fail(String error) {
+        this.error = error;
+        finish(Status.FAILED);
+    }
+    
+    private void finish(Status status) {
+        this.finishedNanos = System.nanoTime();
+        this.status = status;
+        this.completedAt = LocalDateTime.now();
+    }
+    
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+    
+    public void addDiscoveredDocument() {
+        discoveredDocuments.incrementAndGet();
+    }
+    
+    public void addSkippedFile() {
+        skippedFiles.incrementAndGet();
+    }
+    
+    public void setDiscoveryFinished() {
+        this.discoveryFinished = true;
+    }
+    
+    /**
+     * Counts the outcome of one document's ingestion job.
+     */
+    public void addResult(IngestionJob job) {
+        if (job.getStatus() == IngestionJob.Status.COMPLETED) {
+            completedDocuments.incrementAndGet();
+            if (job.isDuplicate()) {
+                duplicateDocuments.incrementAndGet();
+            }
+            persistedChunks.addAndGet(job.getPersistedChunks());
+        } else {
+            addFailure(job.getFileName(), job.getError());
+        }
+    }
+    
+    public void addFailure(String fileName, String error) {
+        failedDocuments.incrementAndGet();
+        synchronized (failures) {
+            if (failures.size() < MAX_REPORTED_FAILURES) {
+                failures.put(fileName, error);
+            }
+        }
+    }
+    
+    public double getDocumentsPerSecond() {
+        return perSecond(completedDocuments.get());
+    }
+    
+    public double getChunksPerSecond() {
+        return perSecond(persistedChunks.get());
+    }
+    
+    private double perSecond(long count) {
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? count / seconds : 0.0;
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public String getSource() {
+        return source;
+    }
+    
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public double getElapsedSeconds() {
+        if (startedNanos == 0) {
+            return 0.0;
+        }
+        long end = isFinished() ? finishedNanos : System.nanoTime();
+        return Duration.ofNanos(end - startedNanos).toMillis() / 1000.0;
+    }
+    
+    public boolean isDiscoveryFinished() {
+        return discoveryFinished;
+    }
+    
+    public int getDiscoveredDocuments() {
+        return discoveredDocuments.get();
+    }
+    
+    public int getSkippedFiles() {
+        return skippedFiles.get();
+    }
+    
+    public int getCompletedDocuments() {
+        return completedDocuments.get();
+    }
+    
+    public int getDuplicateDocuments() {
+        return duplicateDocuments.get();
+    }
+    
+    public int getFailedDocuments() {
+        return failedDocuments.get();
+    }
+    
+    public long getPersistedChunks() {
+        return persistedChunks.get();
+    }
+    
+    public Map<String, String> getFailures() {
+        synchronized (failures) {
+            return new LinkedHashMap<>(failures);
+        }
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+}
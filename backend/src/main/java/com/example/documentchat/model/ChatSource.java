@@ -0,0 +1,8 @@
+package com.example.documentchat.model;
+
+/**
+ * A chunk used as context for an answer, sent ahead of the answer tokens on
+ * the streaming chat endpoint.
+ */
+public record ChatSource(Long documentId, int chunkIndex, String excerpt) {
+}
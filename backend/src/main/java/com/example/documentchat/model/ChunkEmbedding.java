@@ -0,0 +1,48 @@
+package com.example.documentchat.model;
+
+import jakarta.persistence.*;
+
+/**
+ * An embedding stored by content rather than by chunk: the key is the
+ * embedding space followed by the SHA-256 of the normalized chunk text, so any
+ * chunk with the same text can reuse it.
+ */
+@Entity
+@Table(name = "chunk_embeddings")
+public class ChunkEmbedding {
+    @Id
+    @Column(name = "embedding_key")
+    private String key;
+    
+    @Column(name = "embedding_vector", nullable = false, length = 16384)
+    private byte[] embeddingVector; // little-endian float32 values
+    
+    // Constructors
+    public ChunkEmbedding() {}
+    
+    public ChunkEmbedding(String key, float[] embedding) {
+        this.key = key;
+        this.embeddingVector = DocumentChunk.arrayToBytes(embedding);
+    }
+    
+    public float[] getEmbeddingAsArray() {
+        return DocumentChunk.bytesToArray(embeddingVector);
+    }
+    
+    // Getters and Setters
+    public String getKey() {
+        return key;
+    }
+    
+    public void setKey(String key) {
+        this.key = key;
+    }
+    
+    public byte[] getEmbeddingVector() {
+        return embeddingVector;
+    }
+    
+    public void setEmbeddingVector(byte[] embeddingVector) {
+        this.embeddingVector = embeddingVector;
+    }
+}
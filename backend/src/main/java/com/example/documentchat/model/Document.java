@@ -27,6 +27,10 @@ public class Document {
     @Column(nullable = false)
     private LocalDateTime uploadTime;
     
+    // SHA-256 of the uploaded file
+    @Column(length = 64)
+    private String contentHash;
+    
     @OneToMany(mappedBy = "document", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @JsonManagedReference
     private List<DocumentChunk> chunks;
@@ -91,6 +95,14 @@ public class Document {
         this.uploadTime = uploadTime;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     public List<DocumentChunk> getChunks() {
         return chunks;
     }
@@ -2,13 +2,16 @@ package com.example.documentchat.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 @Entity
 @Table(name = "document_chunks")
 public class DocumentChunk {
+    // Sequence ids are allocated in blocks, which lets Hibernate batch chunk inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_chunks_seq")
+    @SequenceGenerator(name = "document_chunks_seq", sequenceName = "document_chunks_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
@@ -22,8 +25,18 @@ public class DocumentChunk {
     @Column(nullable = false)
     private int chunkIndex;
     
+    // SHA-256 of the normalized text
+    @Column(length = 64)
+    @JsonIgnore
+    private String contentHash;
+    
+    @Column(name = "embedding_vector", length = 16384)
+    @JsonIgnore
+    private byte[] embeddingVector; // little-endian float32 values
+    
     @Column(columnDefinition = "TEXT")
-    private String embedding; // JSON string of float array
+    @JsonIgnore
+    private String embedding; // legacy JSON string of float array, only read until migrated
     
     // Constructors
     public DocumentChunk() {}
@@ -32,28 +45,46 @@ public class DocumentChunk {
         this.document = document;
         this.text = text;
         this.chunkIndex = chunkIndex;
-        this.embedding = arrayToString(embedding);
+        this.embeddingVector = arrayToBytes(embedding);
     }
     
     // Helper methods for embedding conversion
     public float[] getEmbeddingAsArray() {
+        if (this.embeddingVector != null) {
+            return bytesToArray(this.embeddingVector);
+        }
         return stringToArray(this.embedding);
     }
     
     public void setEmbeddingFromArray(float[] embedding) {
-        this.embedding = arrayToString(embedding);
+        this.embeddingVector = arrayToBytes(embedding);
+        this.embedding = null;
     }
     
-    private String arrayToString(float[] array) {
-        if (array == null) return null;
-        StringBuilder sb = new StringBuilder();
-        sb.append("[");
-        for (int i = 0; i < array.length; i++) {
-            if (i > 0) sb.append(",");
-            sb.append(array[i]);
+    /**
+     * Moves a legacy text embedding into the binary column. Returns false if
+     * there was nothing to migrate.
+     */
+    public boolean migrateLegacyEmbedding() {
+        if (this.embeddingVector != null || this.embedding == null) {
+            return false;
         }
-        sb.append("]");
-        return sb.toString();
+        setEmbeddingFromArray(stringToArray(this.embedding));
+        return true;
+    }
+    
+    public static byte[] arrayToBytes(float[] array) {
+        if (array == null) return null;
+        ByteBuffer buffer = ByteBuffer.allocate(array.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(array);
+        return buffer.array();
+    }
+    
+    public static float[] bytesToArray(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) return null;
+        float[] result = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(result);
+        return result;
     }
     
     private float[] stringToArray(String str) {
@@ -103,6 +134,22 @@ public class DocumentChunk {
         this.chunkIndex = chunkIndex;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public byte[] getEmbeddingVector() {
+        return embeddingVector;
+    }
+    
+    public void setEmbeddingVector(byte[] embeddingVector) {
+        this.embeddingVector = embeddingVector;
+    }
+    
     public String getEmbedding() {
         return embedding;
     }
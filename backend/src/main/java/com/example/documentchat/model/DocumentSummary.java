@@ -0,0 +1,12 @@
+package com.example.documentchat.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A document as listed by the documents endpoint, without its text or chunks.
+ * {@code textStored} tells whether the extracted text was kept exactly as read;
+ * otherwise the text endpoint reassembles it from the chunks.
+ */
+public record DocumentSummary(Long id, String fileName, String fileType, Long fileSize, LocalDateTime uploadTime,
+                              long chunkCount, boolean textStored) {
+}
@@ -0,0 +1,167 @@
+package com.example.documentchat.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of one asynchronous document upload. Updated by the ingestion
+ * pipeline threads and read by the job status endpoint.
+ */
+public class IngestionJob {
+    
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+    
+    public enum Stage { EXTRACTING, EMBEDDING, PERSISTING, DONE }
+    
+    private final String id;
+    private final String fileName;
+    private final LocalDateTime submittedAt;
+    private volatile Status status;
+    private volatile Stage stage;
+    private volatile long extractedCharacters;
+    private volatile int totalChunks;
+    private final AtomicInteger embeddedChunks = new AtomicInteger();
+    private final AtomicInteger persistedChunks = new AtomicInteger();
+    private final AtomicInteger keptChunks = new AtomicInteger();
+    private volatile int removedChunks;
+    private volatile Long documentId;
+    private volatile boolean duplicate;
+    private volatile String error;
+    private volatile LocalDateTime completedAt;
+    
+    public IngestionJob(String fileName) {
+        this.id = UUID.randomUUID().toString();
+        this.fileName = fileName;
+        this.submittedAt = LocalDateTime.now();
+        this.status = Status.QUEUED;
+        this.stage = Stage.EXTRACTING;
+    }
+    
+    public void start() {
+        this.status = Status.RUNNING;
+    }
+    
+    public void complete(Long documentId) {
+        this.documentId = documentId;
+        this.stage = Stage.DONE;
+        this.status = Status.COMPLETED;
+        this.completedAt = LocalDateTime.now();
+    }
+    
+    /**
+     * Completes the job with an existing document whose file is identical to
+     * the upload.
+     */
+    public void completeAsDuplicate(Long documentId) {
+        this.duplicate = true;
+        complete(documentId);
+    }
+    
+    public void fail(String error) {
+        this.error = error;
+        this.status = Status.FAILED;
+        this.completedAt = LocalDateTime.now();
+    }
+    
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+    
+    public void addEmbeddedChunks(int count) {
+        embeddedChunks.addAndGet(count);
+    }
+    
+    public void addPersistedChunks(int count) {
+        persistedChunks.addAndGet(count);
+    }
+    
+    // Chunks of a replaced document that were unchanged and left in place
+    public void addKeptChunks(int count) {
+        keptChunks.addAndGet(count);
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public String getFileName() {
+        return fileName;
+    }
+    
+    public LocalDateTime getSubmittedAt() {
+        return submittedAt;
+    }
+    
+    public Status getStatus() {
+        return status;
+    }
+    
+    public Stage getStage() {
+        return stage;
+    }
+    
+    public void setStage(Stage stage) {
+        this.stage = stage;
+    }
+    
+    public long getExtractedCharacters() {
+        return extractedCharacters;
+    }
+    
+    public void setExtractedCharacters(long extractedCharacters) {
+        this.extractedCharacters = extractedCharacters;
+    }
+    
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+    
+    public void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+    
+    public int getEmbeddedChunks() {
+        return embeddedChunks.get();
+    }
+    
+    public int getPersistedChunks() {
+        return persistedChunks.get();
+    }
+    
+    public int getKeptChunks() {
+        return keptChunks.get();
+    }
+    
+    public int getRemovedChunks() {
+        return removedChunks;
+    }
+    
+    public void setRemovedChunks(int removedChunks) {
+        this.removedChunks = removedChunks;
+    }
+    
+    public Long getDocumentId() {
+        return documentId;
+    }
+    
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+    
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.documentchat.repository;
+
+import com.example.documentchat.model.ChunkEmbedding;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChunkEmbeddingRepository extends JpaRepository<ChunkEmbedding, String> {
+}
@@ -1,11 +1,15 @@
 package com.example.documentchat.repository;
 
 import com.example.documentchat.model.DocumentChunk;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,6 +18,24 @@ public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, Lo
     @Query("SELECT dc FROM DocumentChunk dc WHERE dc.document.id = :documentId ORDER BY dc.chunkIndex")
     List<DocumentChunk> findByDocumentIdOrderByChunkIndex(@Param("documentId") Long documentId);
     
+    @Query("SELECT dc.text FROM DocumentChunk dc WHERE dc.document.id = :documentId ORDER BY dc.chunkIndex")
+    List<String> findTextsByDocumentId(@Param("documentId") Long documentId);
+    
+    @Query("SELECT dc.id, dc.chunkIndex, dc.contentHash FROM DocumentChunk dc WHERE dc.document.id = :documentId"
+            + " ORDER BY dc.chunkIndex")
+    List<Object[]> findChunkHashesByDocumentId(@Param("documentId") Long documentId);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE DocumentChunk dc SET dc.chunkIndex = :chunkIndex WHERE dc.id = :id")
+    int updateChunkIndex(@Param("id") Long id, @Param("chunkIndex") int chunkIndex);
+    
     @Query("SELECT dc FROM DocumentChunk dc")
     List<DocumentChunk> findAllChunks();
+    
+    @Query("SELECT dc.id, dc.embeddingVector FROM DocumentChunk dc WHERE dc.id IN :ids")
+    List<Object[]> findEmbeddingVectorsByIds(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT dc FROM DocumentChunk dc WHERE dc.embeddingVector IS NULL AND dc.embedding IS NOT NULL")
+    List<DocumentChunk> findLegacyEmbeddingChunks(Pageable pageable);
 }
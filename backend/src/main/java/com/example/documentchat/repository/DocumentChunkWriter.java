@@ -0,0 +1,54 @@
+package com.example.documentchat.repository;
+
+import com.example.documentchat.model.DocumentChunk;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Insert path for new chunk rows that bypasses the JPA persistence context.
+ * Ids are drawn from {@code document_chunks_seq} in blocks the way Hibernate's
+ * pooled generator does, so both can share the sequence, and the rows go out
+ * as JDBC batches in a single transaction.
+ */
+@Repository
+public class DocumentChunkWriter {
+    
+    private static final String INSERT = "INSERT INTO document_chunks"
+            + " (id, document_id, chunk_index, text, embedding_vector, content_hash) VALUES (?, ?, ?, ?, ?, ?)";
+    
+    // INCREMENT BY of document_chunks_seq; each value handed out is the top of a block this size
+    private static final int ID_BLOCK = 50;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}")
+    private int batchSize;
+    
+    /**
+     * Inserts {@code chunks} and sets their ids.
+     */
+    @Transactional
+    public void insert(List<DocumentChunk> chunks) {
+        for (int i = 0; i < chunks.size(); i += ID_BLOCK) {
+            long high = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR document_chunks_seq", Long.class);
+            long id = high - ID_BLOCK + 1;
+            for (int j = i; j < Math.min(i + ID_BLOCK, chunks.size()); j++) {
+                chunks.get(j).setId(id++);
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT, chunks, Math.max(1, batchSize), (statement, chunk) -> {
+            statement.setLong(1, chunk.getId());
+            statement.setLong(2, chunk.getDocument().getId());
+            statement.setInt(3, chunk.getChunkIndex());
+            statement.setString(4, chunk.getText());
+            statement.setBytes(5, chunk.getEmbeddingVector());
+            statement.setString(6, chunk.getContentHash());
+        });
+    }
+}
@@ -1,9 +1,44 @@
 package com.example.documentchat.repository;
 
 import com.example.documentchat.model.Document;
+import com.example.documentchat.model.DocumentSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
+    
+    Optional<Document> findFirstByContentHashOrderByIdAsc(String contentHash);
+    
+    // Chunk counts come from the chunk index and are only computed for the requested page
+    @Query(value = "SELECT new com.example.documentchat.model.DocumentSummary(d.id, d.fileName, d.fileType, d.fileSize,"
+            + " d.uploadTime, (SELECT COUNT(c) FROM DocumentChunk c WHERE c.document = d),"
+            + " CASE WHEN d.extractedText IS NOT NULL THEN true ELSE false END) FROM Document d",
+           countQuery = "SELECT COUNT(d) FROM Document d")
+    Page<DocumentSummary> findSummaries(Pageable pageable);
+    
+    @Query("SELECT d.extractedText FROM Document d WHERE d.id = :id")
+    Optional<String> findExtractedTextById(@Param("id") Long id);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.extractedText = :extractedText WHERE d.id = :id")
+    int updateExtractedText(@Param("id") Long id, @Param("extractedText") String extractedText);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE Document d SET d.fileName = :fileName, d.fileType = :fileType, d.fileSize = :fileSize,"
+            + " d.contentHash = :contentHash, d.uploadTime = :uploadTime WHERE d.id = :id")
+    int updateFile(@Param("id") Long id, @Param("fileName") String fileName, @Param("fileType") String fileType,
+                   @Param("fileSize") Long fileSize, @Param("contentHash") String contentHash,
+                   @Param("uploadTime") LocalDateTime uploadTime);
 }
@@ -0,0 +1,287 @@
+package com.example.documentchat.service;
+
+import com.example.documentchat.model.BulkIngestionJob;
+import com.example.documentchat.model.IngestionJob;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Ingests many documents from one ZIP archive or server-local directory. A
+ * single reader walks the source and hands each supported file to a pool of
+ * {@code ingestion.bulk.workers}, reading a file only once a worker is free
+ * for it, so memory stays bounded however large the source is. Every file
+ * goes through the same pipeline as an upload, and the embedding calls of all
+ * workers share the {@code embedding.rate-limit.texts-per-minute} budget.
+ */
+@Service
+public class BulkIngestionService {
+    
+    private static final Logger log = LoggerFactory.getLogger(BulkIngestionService.class);
+    
+    @Autowired
+    private IngestionService ingestionService;
+    
+    // Documents ingested in parallel by all bulk jobs together
+    @Value("${ingestion.bulk.workers:4}")
+    private int workers;
+    
+    // Bulk jobs allowed to wait while another one is being read
+    @Value("${ingestion.bulk.queue-capacity:4}")
+    private int queueCapacity;
+    
+    // Larger files in an archive or directory are reported as failed and skipped
+    @Value("${ingestion.bulk.max-file-size:50MB}")
+    private DataSize maxFileSize;
+    
+    // Directories may only be ingested from below this path; empty disables directory ingestion
+    @Value("${ingestion.bulk.allowed-root:}")
+    private String allowedRoot;
+    
+    @Value("${ingestion.job-retention-minutes:60}")
+    private long jobRetentionMinutes;
+    
+    private final Map<String, BulkIngestionJob> jobs = new ConcurrentHashMap<>();
+    
+    private ThreadPoolExecutor readerExecutor;
+    private ExecutorService workerExecutor;
+    private Semaphore freeWorkers;
+    
+    @PostConstruct
+    public void start() {
+        int size = Math.max(1, workers);
+        readerExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), ingestionService.namedThreads("bulk-reader-"));
+        workerExecutor = Executors.newFixedThreadPool(size, ingestionService.namedThreads("bulk-ingestion-"));
+        freeWorkers = new Semaphore(size);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        readerExecutor.shutdownNow();
+        workerExecutor.shutdownNow();
+    }
+    
+    /**
+     * Queues the documents in a ZIP archive for ingestion. The archive is
+     * copied to a temporary file, since the upload is gone once the request
+     * returns.
+     *
+     * @throws RejectedExecutionException if the bulk queue is full
+     */
+    public BulkIngestionJob submitArchive(MultipartFile archive) throws IOException {
+        Path temp = Files.createTempFile("bulk-ingestion-", ".zip");
+        try {
+            archive.transferTo(temp);
+            BulkIngestionJob job = new BulkIngestionJob(archive.getOriginalFilename());
+            return enqueue(job, () -> {
+                try {
+                    ingestArchive(job, temp);
+                } finally {
+                    deleteTemporary(temp);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            deleteTemporary(temp);
+            throw e;
+        }
+    }
+    
+    /**
+     * Queues every document below a server-local directory for ingestion.
+     *
+     * @throws SecurityException if directory ingestion is disabled or the
+     *         directory is outside {@code ingestion.bulk.allowed-root}
+     * @throws IllegalArgumentException if the path is not a directory
+     * @throws RejectedExecutionException if the bulk queue is full
+     */
+    public BulkIngestionJob submitDirectory(String path) throws IOException {
+        if (allowedRoot == null || allowedRoot.isBlank()) {
+            throw new SecurityException("Directory ingestion is disabled");
+        }
+        Path directory = Paths.get(path);
+        if (!Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("Not a directory: " + path);
+        }
+        // Real paths, so neither ".." nor a linked directory leads outside the root;
+        // links below it are skipped while walking
+        directory = directory.toRealPath();
+        if (!directory.startsWith(Paths.get(allowedRoot).toRealPath())) {
+            throw new SecurityException("Directory is outside ingestion.bulk.allowed-root");
+        }
+        Path root = directory;
+        BulkIngestionJob job = new BulkIngestionJob(root.toString());
+        return enqueue(job, () -> ingestDirectory(job, root));
+    }
+    
+    public Optional<BulkIngestionJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+    
+    private BulkIngestionJob enqueue(BulkIngestionJob job, Runnable task) {
+        evictFinishedJobs();
+        jobs.put(job.getId(), job);
+        try {
+            readerExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+    
+    private void ingestArchive(BulkIngestionJob job, Path archive) {
+        job.start();
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(archive), 1 << 16))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    dispatch(job, entry.getName(), zip);
+                }
+            }
+            finish(job);
+        } catch (Exception e) {
+            abort(job, e);
+        }
+    }
+    
+    private void ingestDirectory(BulkIngestionJob job, Path directory) {
+        job.start();
+        try (Stream<Path> files = Files.walk(directory)) {
+            // Files.walk does not descend into linked directories, and linked files are
+            // not regular files without following them, so nothing outside the root is read
+            Iterator<Path> iterator = files.filter(file -> Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+                    .iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                try (InputStream in = Files.newInputStream(file, LinkOption.NOFOLLOW_LINKS)) {
+                    dispatch(job, directory.relativize(file).toString(), in);
+                }
+            }
+            finish(job);
+        } catch (Exception e) {
+            abort(job, e);
+        }
+    }
+    
+    /**
+     * Reads one file once a worker is free and ingests it there, or counts it
+     * as skipped if it is not a supported document.
+     */
+    private void dispatch(BulkIngestionJob job, String fileName, InputStream in) throws Exception {
+        if (!isSupported(fileName)) {
+            job.addSkippedFile();
+            return;
+        }
+        job.addDiscoveredDocument();
+        freeWorkers.acquire();
+        byte[] content;
+        try {
+            content = readLimited(in);
+        } catch (IOException e) {
+            freeWorkers.release();
+            job.addFailure(fileName, e.getMessage());
+            return;
+        }
+        try {
+            workerExecutor.execute(() -> {
+                try {
+                    IngestionJob document = new IngestionJob(fileName);
+                    ingestionService.ingest(document, content);
+                    job.addResult(document);
+                } finally {
+                    freeWorkers.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            freeWorkers.release();
+            throw e;
+        }
+    }
+    
+    // Waits for the job's last documents; only one job dispatches at a time
+    private void finish(BulkIngestionJob job) throws InterruptedException {
+        job.setDiscoveryFinished();
+        int size = Math.max(1, workers);
+        freeWorkers.acquire(size);
+        freeWorkers.release(size);
+        job.complete();
+        log.info("Bulk ingestion of {} finished: {} documents ({} duplicate, {} failed, {} files skipped), "
+                        + "{} chunks in {} s ({} documents/s, {} chunks/s)",
+                job.getSource(), job.getCompletedDocuments(), job.getDuplicateDocuments(), job.getFailedDocuments(),
+                job.getSkippedFiles(), job.getPersistedChunks(), job.getElapsedSeconds(),
+                String.format("%.2f", job.getDocumentsPerSecond()), String.format("%.1f", job.getChunksPerSecond()));
+    }
+    
+    private void abort(BulkIngestionJob job, Exception e) {
+        log.warn("Bulk ingestion of {} failed", job.getSource(), e);
+        // Documents already dispatched still finish, so wait for them before the job ends
+        int size = Math.max(1, workers);
+        freeWorkers.acquireUninterruptibly(size);
+        freeWorkers.release(size);
+        job.fail(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+    }
+    
+    private byte[] readLimited(InputStream in) throws IOException {
+        long limit = maxFileSize.toBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1 << 16];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (out.size() + read > limit) {
+                throw new IOException("File is larger than " + maxFileSize.toMegabytes() + " MB");
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+    
+    // Hidden files include the "._" resource forks macOS adds to archives
+    private boolean isSupported(String fileName) {
+        String name = fileName.substring(fileName.lastIndexOf('/') + 1).toLowerCase();
+        return !name.startsWith(".") && (name.endsWith(".pdf") || name.endsWith(".docx") || name.endsWith(".txt"));
+    }
+    
+    private void deleteTemporary(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}", file, e);
+        }
+    }
+    
+    private void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(jobRetentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getCompletedAt().isBefore(cutoff));
+    }
+}
@@ -1,394 +1,423 @@
 package com.example.documentchat.service;
 
+import com.example.documentchat.index.IndexedChunk;
+import com.example.documentchat.index.TopScores;
+import com.example.documentchat.index.VectorOps;
 import com.example.documentchat.model.ChatMessage;
-import com.example.documentchat.model.DocumentChunk;
-import com.example.documentchat.repository.DocumentChunkRepository;
+import com.example.documentchat.model.ChatSource;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
 public class ChatService {
     
+    private static final Logger log = LoggerFactory.getLogger(ChatService.class);
+    
+    private static final Pattern COUNT_BEFORE_NOUN =
+            Pattern.compile("(\\d+)\\s*(total )?(interview|round)s?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COUNT_AFTER_NOUN =
+            Pattern.compile("(interview|round)s?[^\\d]*(\\d+)", Pattern.CASE_INSENSITIVE);
+    
     @Autowired
-    private DocumentChunkRepository documentChunkRepository;
+    private VectorIndexService vectorIndexService;
     
     @Autowired
     private EmbeddingService embeddingService;
     
+    @Autowired
+    private SemanticAnswerCache answerCache;
+    
+    @Autowired
+    private PipelineMetrics metrics;
+    
     @Value("${gemini.api.key:}")
     private String geminiApiKey;
     
+    // Chunks taken from the semantic and the lexical ranking before fusion
+    @Value("${retrieval.hybrid.candidates:50}")
+    private int hybridCandidates;
+    
+    // Reciprocal rank fusion constant; larger values flatten the advantage of top ranks
+    @Value("${retrieval.hybrid.rrf-k:60}")
+    private int rrfK;
+    
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
     
-    public ChatService() {
-        this.webClient = WebClient.builder()
-                .baseUrl("https://generativelanguage.googleapis.com/v1beta")
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
+    public ChatService(@Value("${gemini.api.base-url:https://generativelanguage.googleapis.com/v1beta}") String baseUrl,
+                       @Value("${gemini.api.max-connections:500}") int maxConnections) {
+        this.webClient = GeminiWebClients.create("gemini-chat", baseUrl, maxConnections);
         this.objectMapper = new ObjectMapper();
     }
     
-    public ChatMessage processQuery(String query) {
-        List<DocumentChunk> allChunks = documentChunkRepository.findAllChunks();
-        
-        if (allChunks.isEmpty()) {
-            return new ChatMessage(query, "No documents available to answer this question.", "no_documents");
+    /**
+     * Answers {@code query} without blocking the calling thread: the query
+     * embedding and the Gemini call run on the WebClient's event loop and only
+     * retrieval runs on a scheduler.
+     */
+    public Mono<ChatMessage> processQuery(String query) {
+        return retrieve(query).flatMap(retrieval -> {
+            if (retrieval.answer() != null) {
+                return Mono.just(retrieval.answer());
+            }
+            
+            // Generate response using Gemini; answers substituted for a failed or empty call are not cached
+            return generateResponse(query, retrieval.context()).map(generation -> {
+                if (!generation.fallback()) {
+                    answerCache.put(query, retrieval.queryEmbedding(), retrieval.indexVersion(),
+                            new SemanticAnswerCache.Answer(generation.response(), "documents"));
+                }
+                return new ChatMessage(query, generation.response(), "documents");
+            });
+        });
+    }
+    
+    /**
+     * Answers {@code query} as server-sent events: a {@code sources} event with the
+     * chunks used as context, {@code token} events as Gemini streams the answer,
+     * and a {@code done} event with the complete {@link ChatMessage}. Answers that
+     * need no generation (no documents, out of scope, cached) arrive as a single
+     * token with no sources.
+     */
+    public Flux<ServerSentEvent<Object>> streamQuery(String query) {
+        return retrieve(query)
+                .flatMapMany(retrieval -> {
+                    if (retrieval.answer() != null) {
+                        ChatMessage answer = retrieval.answer();
+                        return Flux.just(event("sources", List.of()), token(answer.getResponse()), event("done", answer));
+                    }
+                    
+                    List<ChatSource> sources = retrieval.chunks().stream()
+                            .map(chunk -> new ChatSource(chunk.getDocumentId(), chunk.getChunkIndex(),
+                                    chunk.getText().substring(0, Math.min(200, chunk.getText().length()))))
+                            .collect(Collectors.toList());
+                    StringBuilder response = new StringBuilder();
+                    AtomicBoolean fallback = new AtomicBoolean();
+                    Flux<ServerSentEvent<Object>> tokens = streamResponse(query, retrieval.context(), fallback)
+                            .doOnNext(response::append)
+                            .map(this::token);
+                    Mono<ServerSentEvent<Object>> done = Mono.fromSupplier(() -> {
+                        if (!fallback.get()) {
+                            answerCache.put(query, retrieval.queryEmbedding(), retrieval.indexVersion(),
+                                    new SemanticAnswerCache.Answer(response.toString(), "documents"));
+                        }
+                        return event("done", new ChatMessage(query, response.toString(), "documents"));
+                    });
+                    return Flux.concat(Flux.just(event("sources", sources)), tokens, done);
+                });
+    }
+    
+    /**
+     * Everything before generation: either a final answer that needs no LLM call,
+     * or the relevant chunks and the context built from them.
+     */
+    private Mono<Retrieval> retrieve(String query) {
+        if (vectorIndexService.isEmpty()) {
+            return Mono.just(Retrieval.answered(new ChatMessage(query, "No documents available to answer this question.", "no_documents")));
         }
         
         // Generate embedding for the query
-        float[] queryEmbedding = embeddingService.generateEmbedding(query);
+        return metrics.time("embedding", embeddingService.embedQuery(query))
+                // Scoring is CPU-bound, but quantized re-ranking also reads vectors over JDBC
+                .publishOn(vectorIndexService.isRerankingFromDatabase() ? Schedulers.boundedElastic() : Schedulers.parallel())
+                .map(queryEmbedding -> retrieve(query, queryEmbedding));
+    }
+    
+    private Retrieval retrieve(String query, float[] queryEmbedding) {
+        // Reuse the answer to a near-identical query over the same chunks
+        long indexVersion = vectorIndexService.getVersion();
+        SemanticAnswerCache.Answer cached = metrics.time("answer-cache", () -> answerCache.lookup(query,
+                queryEmbedding, indexVersion, embeddingService.hasEmbeddingModel()));
+        if (cached != null) {
+            return Retrieval.answered(new ChatMessage(query, cached.response(), cached.source()));
+        }
         
         // Find most relevant chunks
-        List<DocumentChunk> relevantChunks = findRelevantChunks(queryEmbedding, allChunks);
+        List<IndexedChunk> relevantChunks = findRelevantChunks(query, queryEmbedding);
         
         if (relevantChunks.isEmpty()) {
-            return new ChatMessage(query, "Out of scope.", "out_of_scope");
+            return Retrieval.answered(new ChatMessage(query, "Out of scope.", "out_of_scope"));
         }
         
         // Prepare context from relevant chunks
         String context = relevantChunks.stream()
-                .map(DocumentChunk::getText)
+                .map(IndexedChunk::getText)
                 .collect(Collectors.joining("\n\n"));
         
-        // Generate response using Gemini
-        String response = generateResponse(query, context);
-        
-        return new ChatMessage(query, response, "documents");
+        return new Retrieval(null, relevantChunks, context, queryEmbedding, indexVersion);
+    }
+    
+    /**
+     * Hybrid retrieval: chunks ranked by embedding similarity and chunks ranked
+     * by BM25 over their text are merged with reciprocal rank fusion, and the
+     * best 3 are kept for context.
+     */
+    List<IndexedChunk> findRelevantChunks(String query, float[] queryEmbedding) {
+        Collection<IndexedChunk> candidates = metrics.time("candidates", () -> vectorIndexService.findCandidates(queryEmbedding));
+        Ranking semantic = metrics.time("scoring", () -> rankBySimilarity(queryEmbedding, candidates));
+        List<IndexedChunk> lexical = metrics.time("lexical", () -> vectorIndexService.findLexicalMatches(query, hybridCandidates));
+        
+        List<IndexedChunk> relevantChunks = fuse(semantic.chunks(), lexical, 3);
+        metrics.recordRetrieval(semantic.scored(), lexical.size(), relevantChunks.size());
+        return relevantChunks;
     }
     
-    private List<DocumentChunk> findRelevantChunks(float[] queryEmbedding, List<DocumentChunk> allChunks) {
-        List<DocumentChunk> relevantChunks = new ArrayList<>();
+    private Ranking rankBySimilarity(float[] queryEmbedding, Collection<IndexedChunk> candidates) {
         float threshold = 0.3f; // Lower threshold for better recall
         
-        // Enhanced keyword matching for Google interview topics
-        String[] keywords = {
-            "interview", "round", "number", "total", "5", "five", "rounds", "google", "hangouts",
-            "coding", "programming", "data structure", "algorithm", "technical", "focus", "area",
-            "pitfall", "tip", "advice", "preparation", "sql", "java", "python", "hashtable", "tree",
-            "array", "linked list", "complexity", "big-o", "bfs", "dfs", "traversal", "design",
-            "system", "integration", "leadership", "googleyness", "whiteboard", "object oriented"
-        };
-        
-        for (DocumentChunk chunk : allChunks) {
-            float[] chunkEmbedding = chunk.getEmbeddingAsArray();
-            if (chunkEmbedding != null) {
-                float similarity = embeddingService.cosineSimilarity(queryEmbedding, chunkEmbedding);
-                boolean keywordMatch = false;
-                String chunkText = chunk.getText().toLowerCase();
-                
-                // Check for keyword matches
-                for (String keyword : keywords) {
-                    if (chunkText.contains(keyword)) {
-                        keywordMatch = true;
-                        break;
-                    }
-                }
-                
-                // Include chunks that either have good similarity OR keyword matches
-                if (similarity > threshold || keywordMatch) {
-                    relevantChunks.add(chunk);
-                }
+        TopScores<IndexedChunk> top = new TopScores<>(hybridCandidates);
+        float queryNorm = VectorOps.norm(queryEmbedding);
+        int scored = 0;
+        for (IndexedChunk chunk : candidates) {
+            scored++;
+            // Quantized chunks only carry a vector when they are among the re-rank candidates
+            float[] chunkEmbedding = chunk.getEmbedding();
+            float similarity = chunkEmbedding != null
+                    ? embeddingService.similarity(queryEmbedding, queryNorm, chunkEmbedding, chunk.getNorm())
+                    : 0.0f;
+            if (similarity > threshold) {
+                top.offer(chunk, similarity);
             }
         }
-        
-        // Sort by relevance: keyword matches first, then by similarity
-        relevantChunks.sort((a, b) -> {
-            String aText = a.getText().toLowerCase();
-            String bText = b.getText().toLowerCase();
-            
-            // Count keyword matches for each chunk
-            int aKeywordCount = 0, bKeywordCount = 0;
-            for (String keyword : keywords) {
-                if (aText.contains(keyword)) aKeywordCount++;
-                if (bText.contains(keyword)) bKeywordCount++;
-            }
-            
-            // If keyword counts are different, sort by keyword count
-            if (aKeywordCount != bKeywordCount) {
-                return Integer.compare(bKeywordCount, aKeywordCount);
-            }
-            
-            // If keyword counts are same, sort by similarity
-            float simA = embeddingService.cosineSimilarity(queryEmbedding, a.getEmbeddingAsArray());
-            float simB = embeddingService.cosineSimilarity(queryEmbedding, b.getEmbeddingAsArray());
-            return Float.compare(simB, simA);
-        });
-        
-        // Return top 3 chunks for better context
-        return relevantChunks.stream().limit(3).collect(Collectors.toList());
+        return new Ranking(top.toSortedList(), scored);
     }
     
-    private String generateResponse(String query, String context) {
-        try {
-            if (geminiApiKey == null || geminiApiKey.isEmpty()) {
-                return generateDummyResponse(query, context);
+    /**
+     * Reciprocal rank fusion: each chunk scores the sum of 1 / (k + rank) over
+     * the rankings it appears in. Ties keep the semantic ranking's order.
+     */
+    private List<IndexedChunk> fuse(List<IndexedChunk> semantic, List<IndexedChunk> lexical, int limit) {
+        Map<Long, IndexedChunk> chunks = new LinkedHashMap<>();
+        Map<Long, Float> scores = new HashMap<>();
+        for (List<IndexedChunk> ranking : List.of(semantic, lexical)) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                IndexedChunk chunk = ranking.get(rank);
+                chunks.putIfAbsent(chunk.getId(), chunk);
+                scores.merge(chunk.getId(), 1.0f / (rrfK + rank + 1), Float::sum);
             }
-            // Improved, focused prompt
-            String prompt = "Answer the following question using ONLY the provided context. If the answer is not present, reply 'Not found in document.'\n" +
-                    "Context:\n" + context + "\n\nQuestion: " + query;
-            Map<String, Object> requestBody = Map.of(
-                "contents", List.of(Map.of(
-                    "parts", List.of(Map.of("text", prompt))
-                )),
-                "generationConfig", Map.of(
-                    "temperature", 0.1,
-                    "maxOutputTokens", 1000
-                )
-            );
-            String response = webClient.post()
-                    .uri("/models/gemini-pro:generateContent?key=" + geminiApiKey)
-                    .bodyValue(objectMapper.writeValueAsString(requestBody))
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            JsonNode jsonNode = objectMapper.readTree(response);
-            JsonNode candidates = jsonNode.get("candidates");
-            if (candidates.isArray() && candidates.size() > 0) {
-                JsonNode content = candidates.get(0).get("content");
-                if (content.has("parts")) {
-                    JsonNode parts = content.get("parts");
-                    if (parts.isArray() && parts.size() > 0) {
-                        return parts.get(0).get("text").asText();
-                    }
-                }
-            }
-            return "Unable to generate response.";
-        } catch (Exception e) {
-            return generateDummyResponse(query, context);
         }
+        return chunks.values().stream()
+                .sorted((a, b) -> Float.compare(scores.get(b.getId()), scores.get(a.getId())))
+                .limit(limit)
+                .collect(Collectors.toList());
     }
     
-    private String generateDummyResponse(String query, String context) {
-        String lowerQuery = query.toLowerCase();
-        String lowerContext = context.toLowerCase();
-        
-        // Debug logging
-        System.out.println("DEBUG: Query: " + query);
-        System.out.println("DEBUG: Lower query: " + lowerQuery);
-        System.out.println("DEBUG: Context length: " + context.length());
-        System.out.println("DEBUG: Context preview: " + context.substring(0, Math.min(200, context.length())));
-        
-        // Check for empty or very short queries
-        if (query.trim().isEmpty() || query.trim().length() < 3) {
-            return "Out of scope.";
+    private Mono<Generation> generateResponse(String query, String context) {
+        if (geminiApiKey == null || geminiApiKey.isEmpty()) {
+            metrics.recordFallback("generation", "no_api_key");
+            // Deterministic for the query and context, so it is cached like a generated answer
+            return Mono.fromCallable(() -> new Generation(generateDummyResponse(query, context), false));
         }
-        
-        // Check for nonsensical queries (only special characters or numbers)
-        if (query.matches("^[^a-zA-Z]*$") || query.matches("^[\\s\\p{Punct}]*$")) {
-            return "Out of scope.";
+        return metrics.time("generation", Mono.fromCallable(() -> objectMapper.writeValueAsString(buildRequestBody(query, context)))
+                .flatMap(requestBody -> webClient.post()
+                        .uri("/models/gemini-pro:generateContent?key=" + geminiApiKey)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToMono(String.class))
+                .map(this::parseResponse)
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Empty response"))))
+                .onErrorResume(e -> {
+                    metrics.recordFallback("generation", "error");
+                    return Mono.fromCallable(() -> Generation.fallback(generateDummyResponse(query, context)));
+                });
+    }
+    
+    private Generation parseResponse(String response) {
+        JsonNode jsonNode;
+        try {
+            jsonNode = objectMapper.readTree(response);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid response", e);
         }
-        
-        // Check if this is a Google interview related question
-        boolean isGoogleInterviewQuestion = isGoogleInterviewRelated(lowerQuery);
-        
-        // Only check for out-of-scope if it's NOT a Google interview question
-        if (!isGoogleInterviewQuestion) {
-            String[] outOfScopeKeywords = {
-                "weather", "cook", "pasta", "food", "recipe", "capital", "france", "physics", 
-                "quantum", "stock", "price", "meaning", "life", "love", "sky", "blue",
-                "salary", "microsoft", "culture", "benefits", "work-life", "balance",
-                "millionaire", "money", "cooking", "recipe", "weather", "today",
-                "amazon", "facebook", "apple", "netflix", "blockchain", "machine learning",
-                "artificial intelligence", "cloud computing", "business", "marketing", "finance",
-                "investment", "entrepreneurship", "movie", "music", "books", "guitar", "games",
-                "weight", "diet", "exercise", "vitamins", "sleep", "geography", "tokyo",
-                "europe", "relativity", "gravity", "dna", "photosynthesis", "website",
-                "rain", "sunny", "temperature", "forecast", "chicken", "pizza", "rice",
-                "countries", "facts", "theory", "work", "explain", "structure", "build",
-                "start", "invest", "best", "play", "lose", "healthy", "properly", "take",
-                "better", "prepare", "answer", "questions", "ask", "after", "vs",
-                "happy", "success", "meaning", "life", "love", "find", "do with", "should i"
-            };
-            
-            for (String keyword : outOfScopeKeywords) {
-                if (lowerQuery.contains(keyword)) {
-                    return "Out of scope.";
+        metrics.recordTokens(jsonNode.get("usageMetadata"));
+        JsonNode candidates = jsonNode.get("candidates");
+        if (candidates.isArray() && candidates.size() > 0) {
+            JsonNode content = candidates.get(0).get("content");
+            if (content.has("parts")) {
+                JsonNode parts = content.get("parts");
+                if (parts.isArray() && parts.size() > 0) {
+                    return new Generation(parts.get(0).get("text").asText(), false);
                 }
             }
         }
-        
-        // Check for specific questions and provide targeted responses
-        boolean isInterviewCountQuestion = isInterviewCountQuestion(lowerQuery);
-        
-        System.out.println("DEBUG: Is interview count question: " + isInterviewCountQuestion);
-        
-        // Check for company questions
-        if ((lowerQuery.contains("which") && lowerQuery.contains("company")) ||
-            (lowerQuery.contains("what") && lowerQuery.contains("company")) ||
-            (lowerQuery.contains("company") && lowerQuery.contains("interview"))) {
-            return "Based on the documents, this is a Google interview process. The document is titled 'Interview Guide at Google' and contains information about Google's interview process, including details about Google Hangouts interviews, Google-specific focus areas, and Google's interview methodology.";
+        return Generation.fallback("Unable to generate response.");
+    }
+    
+    /**
+     * Streams the answer text from streamGenerateContent as it is produced. If the
+     * call fails before any text arrives the dummy response is streamed instead;
+     * a failure part-way through ends the stream. Either way, and whenever Gemini
+     * produced no text at all, {@code fallback} is set; without an API key the
+     * dummy response is streamed as the answer and it is not.
+     */
+    private Flux<String> streamResponse(String query, String context, AtomicBoolean fallback) {
+        if (geminiApiKey == null || geminiApiKey.isEmpty()) {
+            metrics.recordFallback("generation", "no_api_key");
+            return Mono.fromCallable(() -> generateDummyResponse(query, context)).flux();
         }
-        
-        // Check for position/document questions
-        if ((lowerQuery.contains("which") && lowerQuery.contains("position")) ||
-            (lowerQuery.contains("what") && lowerQuery.contains("position")) ||
-            (lowerQuery.contains("position") && lowerQuery.contains("interview")) ||
-            (lowerQuery.contains("position") && lowerQuery.contains("document")) ||
-            (lowerQuery.contains("which") && lowerQuery.contains("document")) ||
-            (lowerQuery.contains("what") && lowerQuery.contains("document")) ||
-            (lowerQuery.contains("document") && lowerQuery.contains("about"))) {
-            return "Based on the documents, this interview guide is for Google's general technical interview process. The document covers Google's standard interview format including coding interviews, system design, and behavioral assessments. It's not specific to any particular role but provides guidance for Google's general technical interview process.";
+        AtomicBoolean emitted = new AtomicBoolean();
+        // Each chunk carries the running token counts, so only the last one is recorded
+        AtomicReference<JsonNode> usage = new AtomicReference<>();
+        return metrics.time("generation", Mono.fromCallable(() -> objectMapper.writeValueAsString(buildRequestBody(query, context)))
+                .flatMapMany(requestBody -> webClient.post()
+                        .uri("/models/gemini-pro:streamGenerateContent?alt=sse&key=" + geminiApiKey)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {}))
+                .mapNotNull(event -> event.data() != null ? readChunk(event.data()) : null)
+                .doOnNext(chunk -> {
+                    if (chunk.has("usageMetadata")) {
+                        usage.set(chunk.get("usageMetadata"));
+                    }
+                })
+                .mapNotNull(this::extractText)
+                .doOnNext(text -> emitted.set(true))
+                .doOnComplete(() -> metrics.recordTokens(usage.get())))
+                .onErrorResume(e -> {
+                    metrics.recordFallback("generation", "error");
+                    fallback.set(true);
+                    if (emitted.get()) {
+                        return Flux.empty();
+                    }
+                    return Mono.fromCallable(() -> generateDummyResponse(query, context));
+                })
+                .switchIfEmpty(Mono.fromCallable(() -> {
+                    fallback.set(true);
+                    return "Unable to generate response.";
+                }));
+    }
+    
+    private Map<String, Object> buildRequestBody(String query, String context) {
+        // Improved, focused prompt
+        String prompt = "Answer the following question using ONLY the provided context. If the answer is not present, reply 'Not found in document.'\n" +
+                "Context:\n" + context + "\n\nQuestion: " + query;
+        return Map.of(
+            "contents", List.of(Map.of(
+                "parts", List.of(Map.of("text", prompt))
+            )),
+            "generationConfig", Map.of(
+                "temperature", 0.1,
+                "maxOutputTokens", 1000
+            )
+        );
+    }
+    
+    private JsonNode readChunk(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            return null;
         }
-        
-        if (isInterviewCountQuestion) {
-            // Look for the specific pattern "(5) 45-60 minute interviews" or "● (5) Total Interviews"
-            if (lowerContext.contains("(5)") && (lowerContext.contains("interview") || lowerContext.contains("round"))) {
-                return "Based on the documents, there are 5 total interviews in the Google interview process. The document states: 'This will comprise of (5) 45-60 minute interviews, done over Google Hangouts' and '● (5) Total Interviews'.";
-            }
-            // Also check for "5" without parentheses
-            if (lowerContext.contains("5") && (lowerContext.contains("interview") || lowerContext.contains("round")) && 
-                (lowerContext.contains("total") || lowerContext.contains("comprise"))) {
-                return "Based on the documents, there are 5 total interviews in the Google interview process. The document states: 'This will comprise of (5) 45-60 minute interviews, done over Google Hangouts' and '● (5) Total Interviews'.";
-            }
-            // Try to extract number of rounds/interviews from context
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile("(\\d+)\\s*(total )?(interview|round)s?", java.util.regex.Pattern.CASE_INSENSITIVE);
-            java.util.regex.Matcher m = p.matcher(context);
-            if (m.find()) {
-                String num = m.group(1);
-                String type = m.group(3);
-                return "Based on the documents, there are " + num + " total " + type + (num.equals("1") ? "" : "s") + " in the Google interview process.";
-            }
-            // Fallback: look for any number near 'interview' or 'round'
-            p = java.util.regex.Pattern.compile("(interview|round)s?[^\\d]*(\\d+)", java.util.regex.Pattern.CASE_INSENSITIVE);
-            m = p.matcher(context);
-            if (m.find()) {
-                String type = m.group(1);
-                String num = m.group(2);
-                return "Based on the documents, there are " + num + " total " + type + (num.equals("1") ? "" : "s") + " in the Google interview process.";
+    }
+    
+    // Text of the first candidate's first part in a stream chunk, or null if there is none
+    private String extractText(JsonNode chunk) {
+        JsonNode candidates = chunk.get("candidates");
+        if (candidates != null && candidates.isArray() && candidates.size() > 0) {
+            JsonNode content = candidates.get(0).get("content");
+            if (content != null && content.has("parts")) {
+                JsonNode parts = content.get("parts");
+                if (parts.isArray() && parts.size() > 0 && parts.get(0).has("text")) {
+                    return parts.get(0).get("text").asText();
+                }
             }
         }
+        return null;
+    }
+    
+    private ServerSentEvent<Object> token(String text) {
+        return event("token", Map.of("text", text));
+    }
+    
+    private static ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
+    
+    private String generateDummyResponse(String query, String context) {
+        String lowerContext = context.toLowerCase();
         
-        if ((lowerQuery.contains("focus") && lowerQuery.contains("area")) ||
-            (lowerQuery.contains("focus") && lowerQuery.contains("areas")) ||
-            (lowerQuery.contains("what") && lowerQuery.contains("focus")) ||
-            (lowerQuery.contains("tell") && lowerQuery.contains("focus"))) {
-            return "Based on the documents, the four focus areas for the Google interview are:\n" +
-                   "1. (A) Coding & Programming x 2\n" +
-                   "2. (B) Application Design & Domain Knowledge\n" +
-                   "3. (C) System Integration\n" +
-                   "4. (D) Googleyness & Leadership";
-        }
-        
-        if ((lowerQuery.contains("data structure") || lowerQuery.contains("data structures")) ||
-            (lowerQuery.contains("structure") && lowerQuery.contains("know")) ||
-            (lowerQuery.contains("structure") && lowerQuery.contains("important")) ||
-            (lowerQuery.contains("structure") && lowerQuery.contains("study")) ||
-            (lowerQuery.contains("structure") && lowerQuery.contains("coding")) ||
-            (lowerQuery.contains("structure") && lowerQuery.contains("should")) ||
-            (lowerQuery.contains("structure") && lowerQuery.contains("tell")) ||
-            (lowerQuery.contains("structure") && lowerQuery.contains("which"))) {
-            return "Based on the documents, you should know these data structures for the coding interview:\n" +
-                   "• Arrays and 2D arrays\n" +
-                   "• Trees (binary trees, n-ary trees, trie-trees)\n" +
-                   "• Balanced binary trees (red/black tree, splay tree, or AVL tree)\n" +
-                   "• Hashtables\n" +
-                   "• Linked lists\n" +
-                   "The document emphasizes that hashtables are 'arguably the single most important data structure known to mankind' and you should be able to implement one using only arrays.";
-        }
-        
-        if ((lowerQuery.contains("programming language") || lowerQuery.contains("programming languages")) ||
-            (lowerQuery.contains("java") && lowerQuery.contains("python")) ||
-            (lowerQuery.contains("language") && (lowerQuery.contains("java") || lowerQuery.contains("python"))) ||
-            (lowerQuery.contains("language") && lowerQuery.contains("mentioned")) ||
-            (lowerQuery.contains("language") && lowerQuery.contains("recommended")) ||
-            (lowerQuery.contains("language") && lowerQuery.contains("use"))) {
-            return "Based on the documents, the programming languages mentioned are Java and Python. The document states: 'Fluency in common data structures for Java or Python (Avoid flipping between programming languages mid interview)'.";
-        }
-        
-        if ((lowerQuery.contains("pitfall") || lowerQuery.contains("avoid")) ||
-            (lowerQuery.contains("mistake") && lowerQuery.contains("avoid")) ||
-            (lowerQuery.contains("common") && lowerQuery.contains("mistake")) ||
-            (lowerQuery.contains("tell") && lowerQuery.contains("pitfall")) ||
-            (lowerQuery.contains("what") && lowerQuery.contains("pitfall"))) {
-            return "Based on the documents, common pitfalls to avoid during the interview include:\n" +
-                   "• Jumping into design or coding without first analyzing the problem or asking clarifying questions\n" +
-                   "• Not talking out loud - practice speaking out loud through your thought process\n" +
-                   "• Not picking up on hints or giving up on a problem\n" +
-                   "• Suggesting an algorithm but being unable to produce the code";
-        }
-        
-        if ((lowerQuery.contains("how long") || lowerQuery.contains("duration")) ||
-            (lowerQuery.contains("interview") && lowerQuery.contains("long")) ||
-            (lowerQuery.contains("interview") && lowerQuery.contains("last")) ||
-            (lowerQuery.contains("interview") && lowerQuery.contains("time")) ||
-            (lowerQuery.contains("tell") && lowerQuery.contains("length"))) {
-            return "Based on the documents, each interview is 45-60 minutes long. The document states: 'This will comprise of (5) 45-60 minute interviews, done over Google Hangouts'.";
-        }
-        
-        if ((lowerQuery.contains("platform") || lowerQuery.contains("hangouts")) ||
-            (lowerQuery.contains("interview") && lowerQuery.contains("platform")) ||
-            (lowerQuery.contains("interview") && lowerQuery.contains("conducted")) ||
-            (lowerQuery.contains("interview") && lowerQuery.contains("where")) ||
-            (lowerQuery.contains("interview") && lowerQuery.contains("technology")) ||
-            (lowerQuery.contains("tell") && lowerQuery.contains("platform"))) {
-            return "Based on the documents, the interviews are conducted over Google Hangouts. The document states: 'This will comprise of (5) 45-60 minute interviews, done over Google Hangouts'.";
-        }
-        
-        // Tips and advice questions
-        if ((lowerQuery.contains("tip") || lowerQuery.contains("advice")) ||
-            (lowerQuery.contains("recommendation") && lowerQuery.contains("interview")) ||
-            (lowerQuery.contains("preparation") && lowerQuery.contains("tip")) ||
-            (lowerQuery.contains("any") && lowerQuery.contains("advice"))) {
-            return "Based on the documents, here are some key interview tips:\n" +
-                   "• Practice speaking out loud through your thought process\n" +
-                   "• Ask clarifying questions before formulating a response\n" +
-                   "• Think through and rationalize your answers\n" +
-                   "• Always optimize your solutions\n" +
-                   "• Substantiate what your CV/resume says\n" +
-                   "• Explain your thought process and decision-making";
-        }
-        
-        // Algorithm questions
-        if ((lowerQuery.contains("algorithm") && lowerQuery.contains("know")) ||
-            (lowerQuery.contains("algorithm") && lowerQuery.contains("interview")) ||
-            (lowerQuery.contains("algorithm") && lowerQuery.contains("preparation")) ||
-            (lowerQuery.contains("algorithm") && lowerQuery.contains("topic"))) {
-            return "Based on the documents, you should understand:\n" +
-                   "• Algorithm complexity analysis (big-O complexity)\n" +
-                   "• Tree traversal algorithms (BFS and DFS)\n" +
-                   "• Inorder, postorder and preorder traversal\n" +
-                   "• Practice problems to get comfortable with these concepts";
-        }
-        
-        // SQL questions
-        if ((lowerQuery.contains("sql") && lowerQuery.contains("interview")) ||
-            (lowerQuery.contains("sql") && lowerQuery.contains("preparation")) ||
-            (lowerQuery.contains("sql") && lowerQuery.contains("topic")) ||
-            (lowerQuery.contains("database") && lowerQuery.contains("interview"))) {
-            return "Based on the documents, SQL topics include:\n" +
-                   "• Simple or fairly complex queries\n" +
-                   "• Queries that can be solved with joins\n" +
-                   "• Refresh on select statements\n" +
-                   "• When to use what, how to use performance implements";
-        }
-        
-        // General interview process questions
-        if ((lowerQuery.contains("interview") && lowerQuery.contains("process")) ||
-            (lowerQuery.contains("interview") && lowerQuery.contains("like")) ||
-            (lowerQuery.contains("interview") && lowerQuery.contains("work")) ||
-            (lowerQuery.contains("interview") && lowerQuery.contains("happen")) ||
-            (lowerQuery.contains("tell") && lowerQuery.contains("interview")) ||
-            (lowerQuery.contains("what") && lowerQuery.contains("interview"))) {
-            return "Based on the documents, the Google interview process consists of:\n" +
-                   "• 5 total interviews, each 45-60 minutes long\n" +
-                   "• Conducted over Google Hangouts\n" +
-                   "• Four focus areas: Coding & Programming, Application Design, System Integration, and Googleyness & Leadership\n" +
-                   "• Includes technical questions, problem-solving, and behavioral assessment\n" +
-                   "• Candidates should prepare data structures, algorithms, and practice speaking out loud";
+        log.debug("Dummy response for query '{}' with {} chars of context: {}", query, context.length(),
+                context.substring(0, Math.min(200, context.length())));
+        
+        EnumSet<QueryIntents.Intent> intents = QueryIntents.classify(query);
+        log.debug("Query intents: {}", intents);
+        
+        for (QueryIntents.Intent intent : intents) {
+            String response = switch (intent) {
+                case OUT_OF_SCOPE -> "Out of scope.";
+                case COMPANY -> "Based on the documents, this is a Google interview process. The document is titled 'Interview Guide at Google' and contains information about Google's interview process, including details about Google Hangouts interviews, Google-specific focus areas, and Google's interview methodology.";
+                case POSITION -> "Based on the documents, this interview guide is for Google's general technical interview process. The document covers Google's standard interview format including coding interviews, system design, and behavioral assessments. It's not specific to any particular role but provides guidance for Google's general technical interview process.";
+                // Only answered when the context actually states a count
+                case INTERVIEW_COUNT -> interviewCountResponse(context, lowerContext);
+                case FOCUS_AREAS -> "Based on the documents, the four focus areas for the Google interview are:\n" +
+                       "1. (A) Coding & Programming x 2\n" +
+                       "2. (B) Application Design & Domain Knowledge\n" +
+                       "3. (C) System Integration\n" +
+                       "4. (D) Googleyness & Leadership";
+                case DATA_STRUCTURES -> "Based on the documents, you should know these data structures for the coding interview:\n" +
+                       "• Arrays and 2D arrays\n" +
+                       "• Trees (binary trees, n-ary trees, trie-trees)\n" +
+                       "• Balanced binary trees (red/black tree, splay tree, or AVL tree)\n" +
+                       "• Hashtables\n" +
+                       "• Linked lists\n" +
+                       "The document emphasizes that hashtables are 'arguably the single most important data structure known to mankind' and you should be able to implement one using only arrays.";
+                case LANGUAGES -> "Based on the documents, the programming languages mentioned are Java and Python. The document states: 'Fluency in common data structures for Java or Python (Avoid flipping between programming languages mid interview)'.";
+                case PITFALLS -> "Based on the documents, common pitfalls to avoid during the interview include:\n" +
+                       "• Jumping into design or coding without first analyzing the problem or asking clarifying questions\n" +
+                       "• Not talking out loud - practice speaking out loud through your thought process\n" +
+                       "• Not picking up on hints or giving up on a problem\n" +
+                       "• Suggesting an algorithm but being unable to produce the code";
+                case DURATION -> "Based on the documents, each interview is 45-60 minutes long. The document states: 'This will comprise of (5) 45-60 minute interviews, done over Google Hangouts'.";
+                case PLATFORM -> "Based on the documents, the interviews are conducted over Google Hangouts. The document states: 'This will comprise of (5) 45-60 minute interviews, done over Google Hangouts'.";
+                case TIPS -> "Based on the documents, here are some key interview tips:\n" +
+                       "• Practice speaking out loud through your thought process\n" +
+                       "• Ask clarifying questions before formulating a response\n" +
+                       "• Think through and rationalize your answers\n" +
+                       "• Always optimize your solutions\n" +
+                       "• Substantiate what your CV/resume says\n" +
+                       "• Explain your thought process and decision-making";
+                case ALGORITHMS -> "Based on the documents, you should understand:\n" +
+                       "• Algorithm complexity analysis (big-O complexity)\n" +
+                       "• Tree traversal algorithms (BFS and DFS)\n" +
+                       "• Inorder, postorder and preorder traversal\n" +
+                       "• Practice problems to get comfortable with these concepts";
+                case SQL -> "Based on the documents, SQL topics include:\n" +
+                       "• Simple or fairly complex queries\n" +
+                       "• Queries that can be solved with joins\n" +
+                       "• Refresh on select statements\n" +
+                       "• When to use what, how to use performance implements";
+                case PROCESS -> "Based on the documents, the Google interview process consists of:\n" +
+                       "• 5 total interviews, each 45-60 minutes long\n" +
+                       "• Conducted over Google Hangouts\n" +
+                       "• Four focus areas: Coding & Programming, Application Design, System Integration, and Googleyness & Leadership\n" +
+                       "• Includes technical questions, problem-solving, and behavioral assessment\n" +
+                       "• Candidates should prepare data structures, algorithms, and practice speaking out loud";
+            };
+            if (response != null) {
+                return response;
+            }
         }
         
         // General response for other queries
-        if (lowerContext.contains(lowerQuery.split(" ")[0])) {
+        if (lowerContext.contains(query.toLowerCase().split(" ")[0])) {
             return "Based on the documents, here's what I found: " + 
                    context.substring(0, Math.min(300, context.length())) + "...";
         } else {
@@ -396,122 +425,47 @@ public class ChatService {
         }
     }
     
-    private boolean isGoogleInterviewRelated(String lowerQuery) {
-        // Check for Google interview related keywords
-        String[] googleInterviewKeywords = {
-            "google", "interview", "round", "rounds", "coding", "programming", "data structure",
-            "algorithm", "technical", "hangouts", "focus", "area", "pitfall", "tip", "advice",
-            "preparation", "sql", "java", "python", "hashtable", "tree", "array", "linked list",
-            "complexity", "big-o", "bfs", "dfs", "traversal", "inorder", "postorder", "preorder",
-            "balanced", "binary", "n-ary", "trie", "red", "black", "avl", "splay", "design",
-            "system", "integration", "leadership", "googleyness", "domain", "knowledge",
-            "whiteboard", "object oriented", "o(n)", "analysis", "grouping", "subquery", "join",
-            "select", "statement", "performance", "implement", "geeksforgeeks", "hackerrank",
-            "w3schools", "topcoder", "practice", "problem", "solution", "optimize", "brute force",
-            "efficient", "clarifying", "question", "hint", "suggest", "algorithm", "code",
-            "resume", "cv", "career", "trajectory", "assessment", "rationalize", "rationalize",
-            "passenger", "plan", "object", "oriented", "whiteboard", "basic", "char", "manipulation",
-            "linked", "list", "analysis", "grouping", "subqueries", "ordering", "comf", "comfortable",
-            "strong", "skip", "people", "know", "sql", "grouping", "subqueries", "ordering"
-        };
-        
-        for (String keyword : googleInterviewKeywords) {
-            if (lowerQuery.contains(keyword)) {
-                return true;
-            }
+    private String interviewCountResponse(String context, String lowerContext) {
+        // Look for the specific pattern "(5) 45-60 minute interviews" or "● (5) Total Interviews"
+        if (lowerContext.contains("(5)") && (lowerContext.contains("interview") || lowerContext.contains("round"))) {
+            return "Based on the documents, there are 5 total interviews in the Google interview process. The document states: 'This will comprise of (5) 45-60 minute interviews, done over Google Hangouts' and '● (5) Total Interviews'.";
         }
-        
-        // Check for question patterns that are likely about interviews
-        String[] questionPatterns = {
-            "how many", "what", "which", "when", "where", "why", "how", "tell me", "explain",
-            "describe", "list", "name", "give", "provide", "show", "help", "can you", "do you know"
-        };
-        
-        for (String pattern : questionPatterns) {
-            if (lowerQuery.contains(pattern)) {
-                // If it's a question pattern and contains interview-related terms, it's likely relevant
-                if (lowerQuery.contains("interview") || lowerQuery.contains("round") || 
-                    lowerQuery.contains("coding") || lowerQuery.contains("technical") ||
-                    lowerQuery.contains("google") || lowerQuery.contains("preparation") ||
-                    lowerQuery.contains("company")) {
-                    return true;
-                }
-            }
+        // Also check for "5" without parentheses
+        if (lowerContext.contains("5") && (lowerContext.contains("interview") || lowerContext.contains("round")) && 
+            (lowerContext.contains("total") || lowerContext.contains("comprise"))) {
+            return "Based on the documents, there are 5 total interviews in the Google interview process. The document states: 'This will comprise of (5) 45-60 minute interviews, done over Google Hangouts' and '● (5) Total Interviews'.";
         }
-        
-        // Special case: questions about "which company" in interview context
-        if (lowerQuery.contains("which") && lowerQuery.contains("company") && 
-            (lowerQuery.contains("interview") || lowerQuery.contains("this"))) {
-            return true;
+        // Try to extract number of rounds/interviews from context
+        Matcher m = COUNT_BEFORE_NOUN.matcher(context);
+        if (m.find()) {
+            String num = m.group(1);
+            String type = m.group(3);
+            return "Based on the documents, there are " + num + " total " + type + (num.equals("1") ? "" : "s") + " in the Google interview process.";
         }
-        
-        // Special case: questions about position/document in interview context
-        if ((lowerQuery.contains("which") || lowerQuery.contains("what")) && 
-            (lowerQuery.contains("position") || lowerQuery.contains("document")) && 
-            (lowerQuery.contains("interview") || lowerQuery.contains("this"))) {
-            return true;
+        // Fallback: look for any number near 'interview' or 'round'
+        m = COUNT_AFTER_NOUN.matcher(context);
+        if (m.find()) {
+            String type = m.group(1);
+            String num = m.group(2);
+            return "Based on the documents, there are " + num + " total " + type + (num.equals("1") ? "" : "s") + " in the Google interview process.";
         }
-        
-        return false;
+        return null;
     }
     
-    private boolean isInterviewCountQuestion(String lowerQuery) {
-        // Check for specific patterns that ask about interview count
-        String[] countWords = {"how many", "number of", "total", "count", "amount"};
-        String[] interviewWords = {"interview", "round", "rounds", "session", "meeting"};
-        String[] actionWords = {"give", "have", "take", "attend", "participate", "go through"};
-        
-        // First, check if this is about data structures, algorithms, or other technical topics
-        boolean isTechnicalQuestion = lowerQuery.contains("data structure") || 
-                                    lowerQuery.contains("algorithm") || 
-                                    lowerQuery.contains("programming") ||
-                                    lowerQuery.contains("coding") ||
-                                    lowerQuery.contains("study") ||
-                                    lowerQuery.contains("learn") ||
-                                    lowerQuery.contains("know") ||
-                                    lowerQuery.contains("structure") ||
-                                    lowerQuery.contains("topic") ||
-                                    lowerQuery.contains("subject") ||
-                                    lowerQuery.contains("concept");
-        
-        if (isTechnicalQuestion) {
-            return false; // Don't treat technical questions as interview count questions
-        }
-        
-        boolean hasCountWord = false;
-        boolean hasInterviewWord = false;
-        boolean hasActionWord = false;
-        
-        // Check for count words
-        for (String word : countWords) {
-            if (lowerQuery.contains(word)) {
-                hasCountWord = true;
-                break;
-            }
-        }
-        
-        // Check for interview words
-        for (String word : interviewWords) {
-            if (lowerQuery.contains(word)) {
-                hasInterviewWord = true;
-                break;
-            }
+    private record Retrieval(ChatMessage answer, List<IndexedChunk> chunks, String context,
+                             float[] queryEmbedding, long indexVersion) {
+        static Retrieval answered(ChatMessage answer) {
+            return new Retrieval(answer, List.of(), null, null, 0L);
         }
-        
-        // Check for action words
-        for (String word : actionWords) {
-            if (lowerQuery.contains(word)) {
-                hasActionWord = true;
-                break;
-            }
+    }
+    
+    private record Ranking(List<IndexedChunk> chunks, int scored) {
+    }
+    
+    // An answer, and whether it stands in for one Gemini did not produce
+    private record Generation(String response, boolean fallback) {
+        static Generation fallback(String response) {
+            return new Generation(response, true);
         }
-        
-        // It's an interview count question if:
-        // 1. Has count word + interview word (e.g., "how many interviews")
-        // 2. Has interview word + action word (e.g., "interviews do I have to give")
-        // 3. Just "how many" with interview context (e.g., "how many rounds")
-        return (hasCountWord && hasInterviewWord) || 
-               (hasInterviewWord && hasActionWord) ||
-               (lowerQuery.contains("how many") && (hasInterviewWord || hasActionWord));
     }
 }
@@ -0,0 +1,111 @@
+package com.example.documentchat.service;
+
+import com.example.documentchat.model.ChunkEmbedding;
+import com.example.documentchat.model.DocumentChunk;
+import com.example.documentchat.repository.ChunkEmbeddingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed cache of chunk embeddings in {@code chunk_embeddings}.
+ * Chunks are looked up by the hash of their normalized text within the
+ * current embedding space, and only texts never embedded before are sent to
+ * Gemini. Entries outlive the documents they came from, so re-uploading a
+ * deleted or revised document reuses its unchanged chunks.
+ *
+ * <p>Keyword-hash fallback embeddings are cheaper to recompute than to look
+ * up and are never stored.
+ */
+@Service
+public class ChunkEmbeddingStore {
+    
+    // Concurrent ingestions may store the same key; the later write simply wins
+    private static final String UPSERT =
+            "MERGE INTO chunk_embeddings (embedding_key, embedding_vector) KEY (embedding_key) VALUES (?, ?)";
+    
+    @Autowired
+    private ChunkEmbeddingRepository chunkEmbeddingRepository;
+    
+    @Autowired
+    private EmbeddingService embeddingService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PipelineMetrics metrics;
+    
+    @Value("${embedding.store.enabled:true}")
+    private boolean enabled;
+    
+    /**
+     * Returns an embedding for each of {@code texts}, whose content hashes are
+     * {@code hashes}, reusing stored embeddings where possible and storing the
+     * ones that had to be computed.
+     */
+    public List<float[]> embed(List<String> texts, List<String> hashes) {
+        if (texts.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (!enabled || !embeddingService.hasEmbeddingModel()) {
+            return embeddingService.generateEmbeddings(texts);
+        }
+        String space = embeddingService.getEmbeddingSpace();
+        
+        // One lookup per distinct text, also within this slice
+        Map<String, String> textsByKey = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            textsByKey.putIfAbsent(space + ":" + hashes.get(i), texts.get(i));
+        }
+        Map<String, float[]> embeddingsByKey = new HashMap<>();
+        for (ChunkEmbedding stored : chunkEmbeddingRepository.findAllById(textsByKey.keySet())) {
+            embeddingsByKey.put(stored.getKey(), stored.getEmbeddingAsArray());
+        }
+        int reused = embeddingsByKey.size();
+        
+        List<String> missingKeys = new ArrayList<>();
+        List<String> missingTexts = new ArrayList<>();
+        for (Map.Entry<String, String> entry : textsByKey.entrySet()) {
+            if (!embeddingsByKey.containsKey(entry.getKey())) {
+                missingKeys.add(entry.getKey());
+                missingTexts.add(entry.getValue());
+            }
+        }
+        if (!missingTexts.isEmpty()) {
+            BitSet fallbacks = new BitSet();
+            List<float[]> computed = embeddingService.generateEmbeddings(missingTexts, fallbacks);
+            for (int i = 0; i < computed.size(); i++) {
+                embeddingsByKey.put(missingKeys.get(i), computed.get(i));
+            }
+            List<Object[]> rows = new ArrayList<>(computed.size());
+            for (int i = 0; i < computed.size(); i++) {
+                if (!fallbacks.get(i)) {
+                    rows.add(new Object[] {missingKeys.get(i), DocumentChunk.arrayToBytes(computed.get(i))});
+                }
+            }
+            // One JDBC batch instead of a statement round trip per embedding
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT, rows));
+        }
+        metrics.recordChunkEmbeddings(texts.size() - missingTexts.size(), missingTexts.size());
+        
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            // Copies, since the vector index may normalize each chunk's vector in place
+            embeddings.add(embeddingsByKey.get(space + ":" + hashes.get(i)).clone());
+        }
+        return embeddings;
+    }
+}
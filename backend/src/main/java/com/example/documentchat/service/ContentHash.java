@@ -0,0 +1,54 @@
+package com.example.documentchat.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 fingerprints used to recognise content that has been ingested
+ * before: whole uploaded files byte for byte, and chunk text after
+ * normalization, so chunks differing only in whitespace or Unicode composition
+ * share a hash.
+ */
+final class ContentHash {
+    
+    private ContentHash() {}
+    
+    static String of(byte[] content) {
+        return HexFormat.of().formatHex(sha256().digest(content));
+    }
+    
+    static String ofText(String text) {
+        return of(normalize(text).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    // NFC with every whitespace run collapsed to one space and the ends trimmed
+    static String normalize(String text) {
+        String composed = Normalizer.normalize(text, Normalizer.Form.NFC);
+        StringBuilder normalized = new StringBuilder(composed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < composed.length(); i++) {
+            char c = composed.charAt(i);
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            normalized.append(c);
+        }
+        return normalized.toString();
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -2,20 +2,42 @@ package com.example.documentchat.service;
 
 import com.example.documentchat.model.Document;
 import com.example.documentchat.model.DocumentChunk;
+import com.example.documentchat.model.DocumentSummary;
 import com.example.documentchat.repository.DocumentChunkRepository;
+import com.example.documentchat.repository.DocumentChunkWriter;
 import com.example.documentchat.repository.DocumentRepository;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class DocumentProcessingService {
@@ -27,35 +49,161 @@ public class DocumentProcessingService {
     private DocumentChunkRepository documentChunkRepository;
     
     @Autowired
-    private EmbeddingService embeddingService;
+    private DocumentChunkWriter documentChunkWriter;
     
-    public Document processDocument(MultipartFile file) throws IOException {
-        String fileName = file.getOriginalFilename();
-        String fileType = getFileType(fileName);
-        String extractedText = extractTextFromFile(file, fileType);
-        
-        Document document = new Document(fileName, fileType, file.getSize(), extractedText);
-        document = documentRepository.save(document);
-        
-        // Split text into chunks and create embeddings
-        List<String> chunks = splitTextIntoChunks(extractedText);
-        List<DocumentChunk> documentChunks = new ArrayList<>();
-        
-        for (int i = 0; i < chunks.size(); i++) {
-            String chunkText = chunks.get(i);
-            float[] embedding = embeddingService.generateEmbedding(chunkText);
-            
-            DocumentChunk documentChunk = new DocumentChunk(document, chunkText, i, embedding);
-            documentChunks.add(documentChunk);
+    @Autowired
+    private ChunkEmbeddingStore chunkEmbeddingStore;
+    
+    @Autowired
+    private VectorIndexService vectorIndexService;
+    
+    @Autowired
+    private SemanticAnswerCache answerCache;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    // Threads for page-range PDF extraction, 0 = one per available processor
+    @Value("${pdf.extraction.threads:0}")
+    private int pdfExtractionThreads;
+    
+    // Pages per extraction task; shorter PDFs are extracted in one pass
+    @Value("${pdf.extraction.pages-per-task:8}")
+    private int pdfPagesPerTask;
+    
+    // Off by default so heap use does not grow with the size of the upload
+    @Value("${ingestion.store-extracted-text:false}")
+    private boolean storeExtractedText;
+    
+    private ExecutorService pdfExtractionExecutor;
+    
+    @PostConstruct
+    public void startPdfExtraction() {
+        if (pdfExtractionThreads <= 0) {
+            pdfExtractionThreads = Runtime.getRuntime().availableProcessors();
         }
-        
-        documentChunkRepository.saveAll(documentChunks);
-        document.setChunks(documentChunks);
-        
-        return document;
+        AtomicInteger counter = new AtomicInteger();
+        pdfExtractionExecutor = Executors.newFixedThreadPool(pdfExtractionThreads, runnable -> {
+            Thread thread = new Thread(runnable, "pdf-extraction-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void stopPdfExtraction() {
+        pdfExtractionExecutor.shutdownNow();
+    }
+    
+    Document createDocument(String fileName, String fileType, long fileSize, String extractedText, String contentHash) {
+        Document document = new Document(fileName, fileType, fileSize, extractedText);
+        document.setContentHash(contentHash);
+        return documentRepository.save(document);
+    }
+    
+    /**
+     * SHA-256 of an uploaded file; identical uploads have the same fingerprint.
+     */
+    String fingerprint(byte[] content) {
+        return ContentHash.of(content);
+    }
+    
+    /**
+     * Returns the earliest document uploaded with the same fingerprint, if any.
+     */
+    Optional<Document> findDuplicate(String contentHash) {
+        return documentRepository.findFirstByContentHashOrderByIdAsc(contentHash);
+    }
+    
+    /**
+     * SHA-256 of each chunk's normalized text, the key under which its
+     * embedding is stored and reused.
+     */
+    List<String> fingerprintChunks(List<String> texts) {
+        List<String> hashes = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            hashes.add(ContentHash.ofText(text));
+        }
+        return hashes;
+    }
+    
+    public boolean documentExists(Long documentId) {
+        return documentRepository.existsById(documentId);
+    }
+    
+    Optional<Document> findDocument(Long documentId) {
+        return documentRepository.findById(documentId);
+    }
+    
+    /**
+     * Returns the stored chunks of a document as {@code [id, chunkIndex,
+     * contentHash]} rows in chunk order, without loading text or vectors.
+     */
+    List<Object[]> findChunkHashes(Long documentId) {
+        return documentChunkRepository.findChunkHashesByDocumentId(documentId);
+    }
+    
+    /**
+     * Gives existing chunks new positions in their document, keeping their
+     * rows, embeddings and index entries.
+     */
+    void moveChunks(Map<Long, Integer> chunkIndexes) {
+        if (chunkIndexes.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                chunkIndexes.forEach(documentChunkRepository::updateChunkIndex));
+        vectorIndexService.moveChunks(chunkIndexes);
+        answerCache.invalidateAll();
+    }
+    
+    void removeChunks(Collection<Long> chunkIds) {
+        if (chunkIds.isEmpty()) {
+            return;
+        }
+        documentChunkRepository.deleteAllByIdInBatch(chunkIds);
+        vectorIndexService.removeChunks(chunkIds);
+        answerCache.invalidateAll();
+    }
+    
+    /**
+     * Points a document at a new version of its file.
+     */
+    void updateFile(Long documentId, String fileName, String fileType, long fileSize, String contentHash) {
+        documentRepository.updateFile(documentId, fileName, fileType, fileSize, contentHash, LocalDateTime.now());
+        answerCache.invalidateAll();
+    }
+    
+    void storeExtractedText(Long documentId, String extractedText) {
+        documentRepository.updateExtractedText(documentId, extractedText);
+    }
+    
+    boolean isStoringExtractedText() {
+        return storeExtractedText;
     }
     
-    private String getFileType(String fileName) {
+    /**
+     * Persists chunks at the given positions and makes them searchable.
+     */
+    List<DocumentChunk> saveChunks(Document document, List<String> texts, List<String> hashes,
+                                   List<float[]> embeddings, List<Integer> chunkIndexes) {
+        List<DocumentChunk> documentChunks = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            DocumentChunk chunk = new DocumentChunk(document, texts.get(i), chunkIndexes.get(i), embeddings.get(i));
+            chunk.setContentHash(hashes.get(i));
+            documentChunks.add(chunk);
+        }
+        documentChunkWriter.insert(documentChunks);
+        // Never index chunks of a document deleted in the meantime
+        if (!documentRepository.existsById(document.getId())) {
+            return documentChunks;
+        }
+        vectorIndexService.addChunks(documentChunks);
+        answerCache.invalidateAll();
+        return documentChunks;
+    }
+    
+    String getFileType(String fileName) {
         if (fileName == null) return "unknown";
         String extension = fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
         return switch (extension) {
@@ -66,55 +214,196 @@ public class DocumentProcessingService {
         };
     }
     
-    private String extractTextFromFile(MultipartFile file, String fileType) throws IOException {
-        try (InputStream inputStream = file.getInputStream()) {
-            return switch (fileType) {
-                case "application/pdf" -> extractTextFromPDF(inputStream);
-                case "application/vnd.openxmlformats-officedocument.wordprocessingml.document" -> extractTextFromDOCX(inputStream);
-                case "text/plain" -> new String(inputStream.readAllBytes());
-                default -> throw new IllegalArgumentException("Unsupported file type: " + fileType);
-            };
-        }
+    /**
+     * Opens the text of a document for streaming. PDF page ranges and DOCX
+     * paragraphs are produced as the reader is consumed; closing the reader
+     * releases the parsed document and cancels outstanding extraction.
+     */
+    Reader openText(InputStream inputStream, String fileType) throws IOException {
+        return switch (fileType) {
+            case "application/pdf" -> openPDF(inputStream);
+            case "application/vnd.openxmlformats-officedocument.wordprocessingml.document" -> openDOCX(inputStream);
+            case "text/plain" -> new InputStreamReader(inputStream);
+            default -> throw new IllegalArgumentException("Unsupported file type: " + fileType);
+        };
     }
     
-    private String extractTextFromPDF(InputStream inputStream) throws IOException {
-        try (PDDocument document = PDDocument.load(inputStream)) {
+    private Reader openPDF(InputStream inputStream) throws IOException {
+        byte[] pdf = inputStream.readAllBytes();
+        int pagesPerTask = Math.max(1, pdfPagesPerTask);
+        PDDocument document = PDDocument.load(pdf);
+        try {
+            int pageCount = document.getNumberOfPages();
+            if (pageCount > pagesPerTask) {
+                // The reader's first extraction thread takes over the parsed document
+                PageRangeReader reader = new PageRangeReader(pdf, document, pageCount, pagesPerTask);
+                document = null;
+                return reader;
+            }
             PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
+            return new StringReader(stripper.getText(document));
+        } finally {
+            if (document != null) {
+                document.close();
+            }
         }
     }
     
-    private String extractTextFromDOCX(InputStream inputStream) throws IOException {
-        try (XWPFDocument document = new XWPFDocument(inputStream)) {
-            StringBuilder text = new StringBuilder();
-            for (XWPFParagraph paragraph : document.getParagraphs()) {
-                text.append(paragraph.getText()).append("\n");
+    private Reader openDOCX(InputStream inputStream) throws IOException {
+        XWPFDocument document = new XWPFDocument(inputStream);
+        Iterator<XWPFParagraph> paragraphs = document.getParagraphs().iterator();
+        return new SegmentReader() {
+            @Override
+            protected String nextSegment() {
+                return paragraphs.hasNext() ? paragraphs.next().getText() + "\n" : null;
             }
-            return text.toString();
-        }
+            
+            @Override
+            public void close() throws IOException {
+                document.close();
+            }
+        };
     }
     
-    private List<String> splitTextIntoChunks(String text) {
+    List<String> splitTextIntoChunks(String text) {
         List<String> chunks = new ArrayList<>();
-        int chunkSize = 1000; // characters per chunk
-        int overlap = 200; // overlap between chunks
-        
-        for (int i = 0; i < text.length(); i += chunkSize - overlap) {
-            int end = Math.min(i + chunkSize, text.length());
-            String chunk = text.substring(i, end).trim();
-            if (!chunk.isEmpty()) {
-                chunks.add(chunk);
-            }
-        }
-        
+        new TextChunker(new StringReader(text), false).forEachRemaining(chunks::add);
         return chunks;
     }
     
-    public List<Document> getAllDocuments() {
-        return documentRepository.findAll();
+    public Page<DocumentSummary> listDocuments(Pageable pageable) {
+        return documentRepository.findSummaries(pageable);
+    }
+    
+    /**
+     * The extracted text of a document: exactly as read if it was kept
+     * ({@code ingestion.store-extracted-text}), otherwise reassembled from its
+     * chunks. Empty for an unknown document.
+     */
+    public Optional<String> getExtractedText(Long documentId) {
+        Optional<String> stored = documentRepository.findExtractedTextById(documentId);
+        if (stored.isPresent() || !documentRepository.existsById(documentId)) {
+            return stored;
+        }
+        return Optional.of(TextChunker.join(documentChunkRepository.findTextsByDocumentId(documentId)));
     }
     
     public void deleteDocument(Long documentId) {
         documentRepository.deleteById(documentId);
+        vectorIndexService.removeDocument(documentId);
+        answerCache.invalidateAll();
+    }
+    
+    /**
+     * Extracts a PDF in consecutive page ranges on the extraction pool. Each
+     * extraction thread parses the file once and then takes every n-th range in
+     * turn, staying at most one range per thread ahead of the reader, so a PDF
+     * is parsed once per thread rather than once per range. PDDocument is not
+     * thread-safe, so no parsed document is shared between threads.
+     */
+    private class PageRangeReader extends SegmentReader {
+        
+        private final byte[] pdf;
+        private final int pageCount;
+        private final int pagesPerTask;
+        private final List<CompletableFuture<String>> ranges = new ArrayList<>();
+        private final List<Future<?>> extractors = new ArrayList<>();
+        // The document parsed to count pages, until the first extraction thread or close() takes it
+        private final AtomicReference<PDDocument> parsed;
+        private int nextRange = 0;
+        private boolean closed = false;
+        
+        PageRangeReader(byte[] pdf, PDDocument first, int pageCount, int pagesPerTask) {
+            this.pdf = pdf;
+            this.pageCount = pageCount;
+            this.pagesPerTask = pagesPerTask;
+            this.parsed = new AtomicReference<>(first);
+            int rangeCount = (pageCount + pagesPerTask - 1) / pagesPerTask;
+            for (int i = 0; i < rangeCount; i++) {
+                ranges.add(new CompletableFuture<>());
+            }
+            int threads = Math.min(pdfExtractionThreads, rangeCount);
+            try {
+                for (int i = 0; i < threads; i++) {
+                    int firstRange = i;
+                    extractors.add(pdfExtractionExecutor.submit(() -> extract(firstRange, threads)));
+                }
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+        
+        // Extracts ranges firstRange, firstRange + step, ... from one parsed copy of the file
+        private void extract(int firstRange, int step) {
+            int range = firstRange;
+            PDDocument loaded = firstRange == 0 ? parsed.getAndSet(null) : null;
+            try (PDDocument document = loaded != null ? loaded : PDDocument.load(pdf)) {
+                PDFTextStripper stripper = new PDFTextStripper();
+                for (; range < ranges.size(); range += step) {
+                    if (!awaitTurn(range, step)) {
+                        return;
+                    }
+                    stripper.setStartPage(range * pagesPerTask + 1);
+                    stripper.setEndPage(Math.min((range + 1) * pagesPerTask, pageCount));
+                    ranges.get(range).complete(stripper.getText(document));
+                }
+            } catch (Throwable e) {
+                for (; range < ranges.size(); range += step) {
+                    ranges.get(range).completeExceptionally(e);
+                }
+            }
+        }
+        
+        // Waits until the reader is less than step ranges behind, or false once it is closed
+        private synchronized boolean awaitTurn(int range, int step) throws InterruptedException {
+            while (!closed && range >= nextRange + step) {
+                wait();
+            }
+            return !closed;
+        }
+        
+        @Override
+        protected String nextSegment() throws IOException {
+            CompletableFuture<String> range;
+            synchronized (this) {
+                if (closed || nextRange >= ranges.size()) {
+                    return null;
+                }
+                range = ranges.get(nextRange);
+            }
+            try {
+                String text = range.get();
+                synchronized (this) {
+                    nextRange++;
+                    notifyAll();
+                }
+                return text;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("PDF extraction interrupted", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException cause ? cause : new IOException("PDF extraction failed", e.getCause());
+            }
+        }
+        
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            for (Future<?> extractor : extractors) {
+                extractor.cancel(true);
+            }
+            PDDocument unused = parsed.getAndSet(null);
+            if (unused != null) {
+                try {
+                    unused.close();
+                } catch (IOException ignored) {
+                    // Only held in memory
+                }
+            }
+        }
     }
 }
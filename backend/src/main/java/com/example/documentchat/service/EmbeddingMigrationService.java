@@ -0,0 +1,67 @@
+package com.example.documentchat.service;
+
+import com.example.documentchat.model.DocumentChunk;
+import com.example.documentchat.repository.DocumentChunkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Converts chunks written before embeddings were stored as binary float32
+ * (the JSON text in {@code document_chunks.embedding}) into the
+ * {@code embedding_vector} column. Runs in batches at startup, before the
+ * vector index is loaded.
+ */
+@Service
+public class EmbeddingMigrationService {
+    
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingMigrationService.class);
+    
+    @Autowired
+    private DocumentChunkRepository documentChunkRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${embedding.migration.batch-size:500}")
+    private int batchSize;
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void migrateLegacyEmbeddings() {
+        int migrated = 0;
+        while (true) {
+            Integer count = transactionTemplate.execute(status -> migrateBatch());
+            if (count == null || count == 0) {
+                break;
+            }
+            migrated += count;
+        }
+        if (migrated > 0) {
+            log.info("Migrated {} chunk embeddings from text to binary storage", migrated);
+        }
+    }
+    
+    private int migrateBatch() {
+        // Always page 0: migrated rows drop out of the query
+        List<DocumentChunk> legacyChunks = documentChunkRepository.findLegacyEmbeddingChunks(PageRequest.of(0, batchSize));
+        int count = 0;
+        for (DocumentChunk chunk : legacyChunks) {
+            if (chunk.migrateLegacyEmbedding()) {
+                count++;
+            }
+        }
+        documentChunkRepository.saveAll(legacyChunks);
+        return count;
+    }
+}
@@ -1,13 +1,19 @@
 package com.example.documentchat.service;
 
+import com.example.documentchat.index.VectorOps;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 
@@ -17,35 +23,92 @@ public class EmbeddingService {
     @Value("${gemini.api.key:}")
     private String geminiApiKey;
     
+    // Store and query unit-length vectors so that similarity is a plain dot product
+    @Value("${embedding.normalize:true}")
+    private boolean normalizeEmbeddings;
+    
+    // Texts per batchEmbedContents call (the API accepts at most 100)
+    @Value("${embedding.batch-size:100}")
+    private int batchSize;
+    
+    // Batch calls in flight at once during ingestion
+    @Value("${embedding.batch-concurrency:4}")
+    private int batchConcurrency;
+    
+    // Texts sent to the embedding API per minute by all callers together, 0 = unlimited
+    @Value("${embedding.rate-limit.texts-per-minute:0}")
+    private double textsPerMinute;
+    
+    @Autowired
+    private PipelineMetrics metrics;
+    
+    private RateLimiter rateLimiter;
+    
     private final WebClient webClient;
     private final ObjectMapper objectMapper;
+    private final QueryEmbeddingCache queryCache;
     
-    public EmbeddingService() {
-        this.webClient = WebClient.builder()
-                .baseUrl("https://generativelanguage.googleapis.com/v1beta")
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .build();
+    public EmbeddingService(@Value("${gemini.api.base-url:https://generativelanguage.googleapis.com/v1beta}") String baseUrl,
+                            @Value("${gemini.api.max-connections:500}") int maxConnections,
+                            @Value("${embedding.query-cache.max-size:1000}") int queryCacheSize,
+                            @Value("${embedding.query-cache.ttl-seconds:3600}") long queryCacheTtlSeconds) {
+        this.webClient = GeminiWebClients.create("gemini-embedding", baseUrl, maxConnections);
         this.objectMapper = new ObjectMapper();
+        this.queryCache = new QueryEmbeddingCache(queryCacheSize, queryCacheTtlSeconds);
+    }
+    
+    @PostConstruct
+    public void start() {
+        rateLimiter = RateLimiter.perMinute(textsPerMinute);
+        metrics.monitorCache("query-embedding", queryCache, cache -> cache.stats().hits(), cache -> cache.stats().misses());
     }
     
-    public float[] generateEmbedding(String text) {
+    /**
+     * Embeds a chat query without blocking, going through the query cache.
+     * Fallback embeddings produced because the API call failed are emitted but
+     * not cached.
+     */
+    public Mono<float[]> embedQuery(String query) {
+        float[] cached = queryCache.getIfPresent(query);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        if (geminiApiKey == null || geminiApiKey.isEmpty()) {
+            metrics.recordFallback("query-embedding", "no_api_key");
+            return Mono.fromCallable(() -> queryCache.put(query, generateDummyEmbedding(query)));
+        }
+        return requestEmbedding(query)
+                .map(embedding -> queryCache.put(query, embedding))
+                .onErrorResume(e -> {
+                    metrics.recordFallback("query-embedding", "error");
+                    return Mono.fromCallable(() -> generateDummyEmbedding(query));
+                });
+    }
+    
+    /**
+     * Drops every cached query embedding, e.g. after switching embedding model
+     * or normalization, so later queries are embedded afresh.
+     */
+    public void invalidateQueryEmbeddings() {
+        queryCache.invalidateAll();
+    }
+    
+    public QueryEmbeddingCache.Stats getQueryCacheStats() {
+        return queryCache.stats();
+    }
+    
+    private Mono<float[]> requestEmbedding(String text) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(Map.of("text", text)))
+                .flatMap(requestBody -> throttled(webClient.post()
+                        .uri("/models/embedding-001:embedContent?key=" + geminiApiKey)
+                        .bodyValue(requestBody)
+                        .retrieve()
+                        .bodyToMono(String.class), 1, true))
+                .map(this::parseEmbeddingResponse);
+    }
+    
+    private float[] parseEmbeddingResponse(String response) {
         try {
-            if (geminiApiKey == null || geminiApiKey.isEmpty()) {
-                // Return a dummy embedding if no API key is provided
-                return generateDummyEmbedding(text);
-            }
-            
-            String requestBody = objectMapper.writeValueAsString(Map.of(
-                "text", text
-            ));
-            
-            String response = webClient.post()
-                    .uri("/models/embedding-001:embedContent?key=" + geminiApiKey)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            
             JsonNode jsonNode = objectMapper.readTree(response);
             JsonNode embeddingNode = jsonNode.get("embedding").get("values");
             
@@ -54,14 +117,126 @@ public class EmbeddingService {
                 embedding[i] = embeddingNode.get(i).floatValue();
             }
             
-            return embedding;
+            return normalizeEmbeddings ? VectorOps.normalize(embedding) : embedding;
         } catch (Exception e) {
-            // Fallback to dummy embedding
-            return generateDummyEmbedding(text);
+            throw new IllegalStateException("Invalid embedding response", e);
+        }
+    }
+    
+    /**
+     * Embeds {@code texts} in order using Gemini's batchEmbedContents endpoint,
+     * {@code embedding.batch-size} texts per call with up to
+     * {@code embedding.batch-concurrency} calls in flight. Without an API key, or
+     * for any batch whose call fails, each text gets a dummy embedding instead.
+     */
+    public List<float[]> generateEmbeddings(List<String> texts) {
+        return generateEmbeddings(texts, new BitSet());
+    }
+    
+    /**
+     * Like {@link #generateEmbeddings(List)}, additionally setting the
+     * positions in {@code fallbacks} whose embedding is a dummy substitute for
+     * one the model failed to produce, which must not be reused later.
+     */
+    public List<float[]> generateEmbeddings(List<String> texts, BitSet fallbacks) {
+        if (geminiApiKey == null || geminiApiKey.isEmpty()) {
+            metrics.recordFallback("batch-embedding", "no_api_key");
+            return dummyEmbeddings(texts);
         }
+        
+        List<List<String>> batches = new ArrayList<>();
+        int size = Math.max(1, batchSize);
+        for (int i = 0; i < texts.size(); i += size) {
+            batches.add(texts.subList(i, Math.min(i + size, texts.size())));
+        }
+        
+        List<Batch> embedded = Flux.fromIterable(batches)
+                .flatMapSequential(this::embedBatch, Math.max(1, batchConcurrency))
+                .collectList()
+                .block();
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        if (embedded != null) {
+            for (Batch batch : embedded) {
+                if (batch.fallback()) {
+                    fallbacks.set(embeddings.size(), embeddings.size() + batch.embeddings().size());
+                }
+                embeddings.addAll(batch.embeddings());
+            }
+        }
+        return embeddings;
     }
     
-    private float[] generateDummyEmbedding(String text) {
+    private Mono<Batch> embedBatch(List<String> batch) {
+        try {
+            List<Map<String, Object>> requests = new ArrayList<>(batch.size());
+            for (String text : batch) {
+                requests.add(Map.of(
+                    "model", "models/embedding-001",
+                    "content", Map.of("parts", List.of(Map.of("text", text)))
+                ));
+            }
+            String requestBody = objectMapper.writeValueAsString(Map.of("requests", requests));
+            
+            return throttled(webClient.post()
+                    .uri("/models/embedding-001:batchEmbedContents?key=" + geminiApiKey)
+                    .bodyValue(requestBody)
+                    .retrieve()
+                    .bodyToMono(String.class), batch.size(), false)
+                    .map(response -> new Batch(parseBatchResponse(response, batch.size()), false))
+                    .onErrorResume(e -> {
+                        metrics.recordFallback("batch-embedding", "error");
+                        return Mono.just(new Batch(dummyEmbeddings(batch), true));
+                    });
+        } catch (Exception e) {
+            metrics.recordFallback("batch-embedding", "error");
+            return Mono.just(new Batch(dummyEmbeddings(batch), true));
+        }
+    }
+    
+    // Delays the call until the rate limit has room for its texts; single embeddings
+    // (chat queries) have priority, so they never queue behind ingestion batches
+    private <T> Mono<T> throttled(Mono<T> call, int texts, boolean priority) {
+        if (rateLimiter == null) {
+            return call;
+        }
+        return Mono.defer(() -> {
+            Duration wait = priority ? rateLimiter.reservePriority(texts) : rateLimiter.reserve(texts);
+            metrics.recordRateLimitWait(wait);
+            return wait.isZero() ? call : call.delaySubscription(wait);
+        });
+    }
+    
+    private List<float[]> parseBatchResponse(String response, int expected) {
+        try {
+            JsonNode embeddingsNode = objectMapper.readTree(response).get("embeddings");
+            if (embeddingsNode == null || !embeddingsNode.isArray() || embeddingsNode.size() != expected) {
+                throw new IllegalStateException("Expected " + expected + " embeddings in batch response");
+            }
+            List<float[]> embeddings = new ArrayList<>(expected);
+            for (JsonNode embeddingNode : embeddingsNode) {
+                JsonNode values = embeddingNode.get("values");
+                float[] embedding = new float[values.size()];
+                for (int i = 0; i < values.size(); i++) {
+                    embedding[i] = values.get(i).floatValue();
+                }
+                embeddings.add(normalizeEmbeddings ? VectorOps.normalize(embedding) : embedding);
+            }
+            return embeddings;
+        } catch (Exception e) {
+            // Caught by onErrorResume and replaced with dummy embeddings
+            throw new IllegalStateException("Invalid batch embedding response", e);
+        }
+    }
+    
+    private List<float[]> dummyEmbeddings(List<String> texts) {
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            embeddings.add(generateDummyEmbedding(text));
+        }
+        return embeddings;
+    }
+    
+    float[] generateDummyEmbedding(String text) {
         // Improved dummy embedding: return zero vector if no important keywords are present
         String lowerText = text.toLowerCase();
         float[] embedding = new float[768]; // Standard embedding size
@@ -113,20 +288,41 @@ public class EmbeddingService {
     }
     
     public float cosineSimilarity(float[] a, float[] b) {
-        if (a.length != b.length) {
-            throw new IllegalArgumentException("Arrays must have the same length");
-        }
-        
-        float dotProduct = 0.0f;
-        float normA = 0.0f;
-        float normB = 0.0f;
-        
-        for (int i = 0; i < a.length; i++) {
-            dotProduct += a[i] * b[i];
-            normA += a[i] * a[i];
-            normB += b[i] * b[i];
+        return VectorOps.cosine(a, b);
+    }
+    
+    /**
+     * Similarity between a query and a stored vector whose norms are already
+     * known. With {@code embedding.normalize} both sides are unit length and
+     * this is just the dot product.
+     */
+    public float similarity(float[] query, float queryNorm, float[] vector, float vectorNorm) {
+        if (normalizeEmbeddings) {
+            return VectorOps.dot(query, vector);
         }
-        
-        return dotProduct / (float) (Math.sqrt(normA) * Math.sqrt(normB));
+        return VectorOps.cosine(query, queryNorm, vector, vectorNorm);
+    }
+    
+    /**
+     * True when embeddings come from the Gemini model rather than the keyword
+     * hash fallback, i.e. when nearby vectors mean similar text.
+     */
+    public boolean hasEmbeddingModel() {
+        return geminiApiKey != null && !geminiApiKey.isEmpty();
+    }
+    
+    public boolean isNormalizing() {
+        return normalizeEmbeddings;
+    }
+    
+    /**
+     * Names the vector space embeddings are currently produced in; a stored
+     * embedding can only stand in for a new one from the same space.
+     */
+    public String getEmbeddingSpace() {
+        return (hasEmbeddingModel() ? "embedding-001" : "keyword-hash") + (normalizeEmbeddings ? "/unit" : "");
+    }
+    
+    private record Batch(List<float[]> embeddings, boolean fallback) {
     }
 }
@@ -0,0 +1,33 @@
+package com.example.documentchat.service;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Builds the WebClients used to call Gemini. Requests beyond
+ * {@code maxConnections} wait for a pooled connection instead of failing, so a
+ * burst of concurrent chats queues on the pool rather than on threads.
+ */
+final class GeminiWebClients {
+    
+    private GeminiWebClients() {
+    }
+    
+    static WebClient create(String name, String baseUrl, int maxConnections) {
+        ConnectionProvider connections = ConnectionProvider.builder(name)
+                .maxConnections(Math.max(1, maxConnections))
+                .pendingAcquireMaxCount(-1)
+                .build();
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                // A full batch of 768-dim embeddings is well over the 256 KB default
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build();
+    }
+}
@@ -0,0 +1,568 @@
+package com.example.documentchat.service;
+
+import com.example.documentchat.model.Document;
+import com.example.documentchat.model.DocumentChunk;
+import com.example.documentchat.model.IngestionJob;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs uploads in the background so the HTTP request returns as soon as the
+ * file is received. Each job streams the document through extraction,
+ * chunking and embedding one slice at a time, so the full text is never
+ * materialized; embedding and persistence run as separate stages connected by
+ * a bounded queue, so embedding blocks instead of piling up vectors when the
+ * database falls behind. Jobs beyond {@code ingestion.queue-capacity} are
+ * rejected rather than queued without limit.
+ */
+@Service
+public class IngestionService {
+    
+    private static final Logger log = LoggerFactory.getLogger(IngestionService.class);
+    
+    @Autowired
+    private DocumentProcessingService documentProcessingService;
+    
+    @Autowired
+    private ChunkEmbeddingStore chunkEmbeddingStore;
+    
+    @Autowired
+    private PipelineMetrics metrics;
+    
+    @Value("${ingestion.workers:2}")
+    private int workers;
+    
+    @Value("${ingestion.bulk.workers:4}")
+    private int bulkWorkers;
+    
+    @Value("${ingestion.queue-capacity:20}")
+    private int queueCapacity;
+    
+    // Chunks embedded per hand-off to the persistence stage
+    @Value("${ingestion.slice-size:200}")
+    private int sliceSize;
+    
+    // Embedded slices allowed to wait for persistence before embedding blocks
+    @Value("${ingestion.persist-queue-capacity:4}")
+    private int persistQueueCapacity;
+    
+    @Value("${ingestion.job-retention-minutes:60}")
+    private long jobRetentionMinutes;
+    
+    // On Java 21 job and persistence threads become virtual, so blocking Gemini calls park cheaply
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+    
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+    
+    // Documents still being ingested, being deleted or with a replacement queued or
+    // running; a replacement or delete needs the document to itself
+    private final Set<Long> busyDocuments = ConcurrentHashMap.newKeySet();
+    
+    // Content hashes of new documents being ingested, guarded by busyDocuments; an
+    // identical upload waits for the first to finish instead of racing it
+    private final Set<String> ingestingHashes = new HashSet<>();
+    
+    private ThreadPoolExecutor jobExecutor;
+    private ExecutorService persistExecutor;
+    
+    @PostConstruct
+    public void start() {
+        if (virtualThreads && Runtime.version().feature() < 21) {
+            log.warn("spring.threads.virtual.enabled needs Java 21, ingestion uses platform threads");
+        }
+        jobExecutor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), namedThreads("ingestion-"));
+        // One persistence consumer per upload or bulk worker, so a running job never waits for one
+        persistExecutor = Executors.newFixedThreadPool(workers + Math.max(1, bulkWorkers),
+                namedThreads("ingestion-persist-"));
+    }
+    
+    @PreDestroy
+    public void stop() {
+        jobExecutor.shutdownNow();
+        persistExecutor.shutdownNow();
+    }
+    
+    /**
+     * Queues {@code content} for ingestion and returns its job immediately.
+     *
+     * @throws RejectedExecutionException if the ingestion queue is full
+     */
+    public IngestionJob submit(String fileName, byte[] content) {
+        IngestionJob job = new IngestionJob(fileName);
+        return enqueue(job, () -> ingest(job, content));
+    }
+    
+    /**
+     * Queues a new version of an existing document. Only chunks whose text is
+     * not already stored for the document are embedded and inserted; the rest
+     * keep their rows, embeddings and index entries.
+     *
+     * @throws IllegalStateException if the document is still being ingested
+     *         or already being replaced
+     * @throws RejectedExecutionException if the ingestion queue is full
+     */
+    public IngestionJob submitReplacement(Long documentId, String fileName, byte[] content) {
+        // Synchronized with document creation, so a document visible to the caller is already marked busy
+        synchronized (busyDocuments) {
+            if (!busyDocuments.add(documentId)) {
+                throw new IllegalStateException("Document " + documentId + " is still being ingested or replaced");
+            }
+        }
+        IngestionJob job = new IngestionJob(fileName);
+        job.setDocumentId(documentId);
+        try {
+            return enqueue(job, () -> {
+                try {
+                    replace(job, documentId, content);
+                } finally {
+                    busyDocuments.remove(documentId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            busyDocuments.remove(documentId);
+            throw e;
+        }
+    }
+    
+    /**
+     * Deletes a document unless it is still being ingested or replaced, so its
+     * chunks are never written or indexed after the document is gone.
+     *
+     * @throws IllegalStateException if the document is still being ingested
+     *         or replaced
+     */
+    public void delete(Long documentId) {
+        synchronized (busyDocuments) {
+            if (!busyDocuments.add(documentId)) {
+                throw new IllegalStateException("Document " + documentId + " is still being ingested or replaced");
+            }
+        }
+        try {
+            documentProcessingService.deleteDocument(documentId);
+        } finally {
+            busyDocuments.remove(documentId);
+        }
+    }
+    
+    private IngestionJob enqueue(IngestionJob job, Runnable task) {
+        evictFinishedJobs();
+        jobs.put(job.getId(), job);
+        try {
+            jobExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        return job;
+    }
+    
+    public Optional<IngestionJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+    
+    /**
+     * Ingests {@code content} as a new document on the calling thread,
+     * recording the outcome on {@code job}.
+     */
+    void ingest(IngestionJob job, byte[] content) {
+        job.start();
+        Document document = null;
+        String reservedHash = null;
+        try {
+            String contentHash = documentProcessingService.fingerprint(content);
+            Optional<Document> duplicate = reserveHash(contentHash);
+            if (duplicate.isPresent()) {
+                // Same bytes as an earlier upload: nothing to extract or embed
+                metrics.recordDuplicateDocument();
+                job.completeAsDuplicate(duplicate.get().getId());
+                return;
+            }
+            reservedHash = contentHash;
+            
+            String fileType = documentProcessingService.getFileType(job.getFileName());
+            boolean keepText = documentProcessingService.isStoringExtractedText();
+            try (TextChunker chunker = new TextChunker(
+                    documentProcessingService.openText(new ByteArrayInputStream(content), fileType), keepText)) {
+                synchronized (busyDocuments) {
+                    document = documentProcessingService.createDocument(job.getFileName(), fileType, content.length,
+                            null, contentHash);
+                    busyDocuments.add(document.getId());
+                }
+                job.setDocumentId(document.getId());
+                
+                embedAndPersist(job, document, chunker, null);
+                job.setExtractedCharacters(chunker.getCharactersRead());
+                if (keepText) {
+                    documentProcessingService.storeExtractedText(document.getId(), chunker.getText());
+                }
+            }
+            job.complete(document.getId());
+        } catch (Exception e) {
+            log.warn("Ingestion of {} failed", job.getFileName(), e);
+            if (document != null) {
+                documentProcessingService.deleteDocument(document.getId());
+            }
+            job.fail(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            if (document != null) {
+                busyDocuments.remove(document.getId());
+            }
+            if (reservedHash != null) {
+                releaseHash(reservedHash);
+            }
+        }
+    }
+    
+    /**
+     * Returns the document already uploaded with {@code contentHash}, or
+     * reserves the hash for the caller if there is none. While an upload with
+     * the same bytes is still being ingested it waits, since that document is
+     * incomplete and is deleted if its ingestion fails.
+     */
+    private Optional<Document> reserveHash(String contentHash) throws InterruptedException {
+        synchronized (busyDocuments) {
+            while (ingestingHashes.contains(contentHash)) {
+                busyDocuments.wait();
+            }
+            Optional<Document> duplicate = documentProcessingService.findDuplicate(contentHash);
+            if (duplicate.isEmpty()) {
+                ingestingHashes.add(contentHash);
+            }
+            return duplicate;
+        }
+    }
+    
+    private void releaseHash(String contentHash) {
+        synchronized (busyDocuments) {
+            ingestingHashes.remove(contentHash);
+            busyDocuments.notifyAll();
+        }
+    }
+    
+    private void replace(IngestionJob job, Long documentId, byte[] content) {
+        job.start();
+        ChunkDiff diff = null;
+        try {
+            Document document = documentProcessingService.findDocument(documentId)
+                    .orElseThrow(() -> new IllegalArgumentException("Document not found: " + documentId));
+            String contentHash = documentProcessingService.fingerprint(content);
+            String fileType = documentProcessingService.getFileType(job.getFileName());
+            if (contentHash.equals(document.getContentHash())) {
+                // Same bytes as the current version: every chunk stays
+                documentProcessingService.updateFile(documentId, job.getFileName(), fileType, content.length,
+                        contentHash);
+                job.complete(documentId);
+                return;
+            }
+            
+            diff = new ChunkDiff(documentProcessingService.findChunkHashes(documentId));
+            boolean keepText = documentProcessingService.isStoringExtractedText();
+            try (TextChunker chunker = new TextChunker(
+                    documentProcessingService.openText(new ByteArrayInputStream(content), fileType), keepText)) {
+                embedAndPersist(job, document, chunker, diff);
+                job.setExtractedCharacters(chunker.getCharactersRead());
+                
+                // Past this point the new version is complete and is not rolled back
+                List<Long> removed = diff.unclaimed();
+                ChunkDiff applied = diff;
+                diff = null;
+                documentProcessingService.removeChunks(removed);
+                job.setRemovedChunks(removed.size());
+                documentProcessingService.updateFile(documentId, job.getFileName(), fileType, content.length,
+                        contentHash);
+                if (keepText) {
+                    documentProcessingService.storeExtractedText(documentId, chunker.getText());
+                }
+                metrics.recordDocumentUpdate(applied.kept(), job.getPersistedChunks(), removed.size());
+            }
+            job.complete(documentId);
+        } catch (Exception e) {
+            log.warn("Replacement of document {} with {} failed", documentId, job.getFileName(), e);
+            if (diff != null) {
+                revert(diff);
+            }
+            job.fail(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+    }
+    
+    // Leaves the document as it was before a failed replacement
+    private void revert(ChunkDiff diff) {
+        try {
+            documentProcessingService.removeChunks(diff.added());
+            documentProcessingService.moveChunks(diff.originalIndexes());
+        } catch (Exception e) {
+            log.error("Could not roll back a failed document replacement", e);
+        }
+    }
+    
+    /**
+     * Pulls chunks from {@code chunker} one slice at a time, so extraction,
+     * chunking and embedding advance together and only the slices waiting for
+     * persistence are held in memory. With a {@code diff}, chunks already
+     * stored for the document are claimed from it instead of being embedded.
+     * Returns only once the persistence stage has stopped, so a caller cleaning
+     * up after a failure never races with a slice still being written.
+     */
+    private void embedAndPersist(IngestionJob job, Document document, TextChunker chunker, ChunkDiff diff)
+            throws Exception {
+        BlockingQueue<Slice> persistQueue = new ArrayBlockingQueue<>(Math.max(1, persistQueueCapacity));
+        // Claimed by whichever comes first: the persister starting, or the job giving up on it
+        AtomicBoolean claimed = new AtomicBoolean();
+        CountDownLatch stopped = new CountDownLatch(1);
+        Future<?> persister = persistExecutor.submit(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                persist(persistQueue, job, document, diff);
+            } finally {
+                stopped.countDown();
+            }
+            return null;
+        });
+        
+        try {
+            int size = Math.max(1, sliceSize);
+            int start = 0;
+            while (chunker.hasNext()) {
+                List<String> texts = new ArrayList<>(size);
+                while (texts.size() < size && chunker.hasNext()) {
+                    texts.add(chunker.next());
+                }
+                // Totals grow as the document is read
+                job.setExtractedCharacters(chunker.getCharactersRead());
+                job.setTotalChunks(start + texts.size());
+                
+                job.setStage(IngestionJob.Stage.EMBEDDING);
+                List<String> hashes = documentProcessingService.fingerprintChunks(texts);
+                Slice slice = diff != null ? diff.plan(texts, hashes, start) : Slice.of(texts, hashes, start);
+                job.addKeptChunks(texts.size() - slice.texts().size());
+                slice = slice.withEmbeddings(chunkEmbeddingStore.embed(slice.texts(), slice.hashes()));
+                job.addEmbeddedChunks(slice.texts().size());
+                handOff(persistQueue, slice, persister);
+                start += texts.size();
+                job.setStage(IngestionJob.Stage.EXTRACTING);
+            }
+            handOff(persistQueue, Slice.END, persister);
+            job.setStage(IngestionJob.Stage.PERSISTING);
+            persister.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            persister.cancel(true);
+            // The interrupt only takes effect between writes, so wait for the one in progress
+            if (!claimed.compareAndSet(false, true)) {
+                awaitUninterruptibly(stopped);
+            }
+        }
+    }
+    
+    // The persistence stage: saves slices in order until the end marker
+    private void persist(BlockingQueue<Slice> persistQueue, IngestionJob job, Document document, ChunkDiff diff)
+            throws InterruptedException {
+        while (true) {
+            Slice slice = persistQueue.take();
+            if (slice == Slice.END) {
+                return;
+            }
+            if (!slice.texts().isEmpty()) {
+                long started = System.nanoTime();
+                List<DocumentChunk> saved = documentProcessingService.saveChunks(document, slice.texts(),
+                        slice.hashes(), slice.embeddings(), slice.chunkIndexes());
+                metrics.recordChunkPersist(System.nanoTime() - started);
+                if (diff != null) {
+                    diff.recordAdded(saved);
+                }
+            }
+            documentProcessingService.moveChunks(slice.moved());
+            job.addPersistedChunks(slice.texts().size());
+        }
+    }
+    
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Blocks while the persistence stage is behind, but gives up if it has died
+    private void handOff(BlockingQueue<Slice> queue, Slice slice, Future<?> persister) throws Exception {
+        while (!queue.offer(slice, 1, TimeUnit.SECONDS)) {
+            if (persister.isDone()) {
+                persister.get();
+                throw new IllegalStateException("Persistence stage stopped");
+            }
+        }
+    }
+    
+    private void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(jobRetentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.getCompletedAt().isBefore(cutoff));
+    }
+    
+    ThreadFactory namedThreads(String prefix) {
+        if (virtualThreads && Runtime.version().feature() >= 21) {
+            return new VirtualThreadTaskExecutor(prefix).getVirtualThreadFactory();
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * Chunks to insert at {@code chunkIndexes}, plus existing chunks that move
+     * to a new position ({@code moved}, chunk id to index).
+     */
+    private record Slice(List<String> texts, List<String> hashes, List<Integer> chunkIndexes,
+                         List<float[]> embeddings, Map<Long, Integer> moved) {
+        static final Slice END = new Slice(List.of(), List.of(), List.of(), List.of(), Map.of());
+        
+        static Slice of(List<String> texts, List<String> hashes, int firstIndex) {
+            List<Integer> chunkIndexes = new ArrayList<>(texts.size());
+            for (int i = 0; i < texts.size(); i++) {
+                chunkIndexes.add(firstIndex + i);
+            }
+            return new Slice(texts, hashes, chunkIndexes, null, Map.of());
+        }
+        
+        Slice withEmbeddings(List<float[]> embeddings) {
+            return new Slice(texts, hashes, chunkIndexes, embeddings, moved);
+        }
+    }
+    
+    private record StoredChunk(Long id, int chunkIndex) {}
+    
+    /**
+     * The chunks stored for a document, keyed by content hash, matched one by
+     * one against the chunks of its new version. A stored chunk is claimed at
+     * most once, so repeated text keeps as many rows as the new version has
+     * copies of it; whatever is left unclaimed at the end was removed from the
+     * document. Chunks stored before content hashes existed never match.
+     */
+    private static final class ChunkDiff {
+        
+        private final Map<String, Deque<StoredChunk>> stored = new HashMap<>();
+        private final List<Long> unhashed = new ArrayList<>();
+        private final Map<Long, Integer> originalIndexes = new HashMap<>();
+        private final List<Long> added = Collections.synchronizedList(new ArrayList<>());
+        private int kept;
+        
+        ChunkDiff(List<Object[]> rows) {
+            for (Object[] row : rows) {
+                Long id = (Long) row[0];
+                int chunkIndex = ((Number) row[1]).intValue();
+                String hash = (String) row[2];
+                if (hash == null) {
+                    unhashed.add(id);
+                } else {
+                    stored.computeIfAbsent(hash, key -> new ArrayDeque<>()).add(new StoredChunk(id, chunkIndex));
+                }
+            }
+        }
+        
+        /**
+         * Splits a slice of the new version into chunks that have to be
+         * inserted and stored chunks that are kept, possibly at a new index.
+         */
+        Slice plan(List<String> texts, List<String> hashes, int firstIndex) {
+            List<String> newTexts = new ArrayList<>();
+            List<String> newHashes = new ArrayList<>();
+            List<Integer> chunkIndexes = new ArrayList<>();
+            Map<Long, Integer> moved = new HashMap<>();
+            for (int i = 0; i < texts.size(); i++) {
+                int chunkIndex = firstIndex + i;
+                Deque<StoredChunk> candidates = stored.get(hashes.get(i));
+                StoredChunk match = candidates != null ? candidates.poll() : null;
+                if (match == null) {
+                    newTexts.add(texts.get(i));
+                    newHashes.add(hashes.get(i));
+                    chunkIndexes.add(chunkIndex);
+                    continue;
+                }
+                kept++;
+                if (match.chunkIndex() != chunkIndex) {
+                    moved.put(match.id(), chunkIndex);
+                    originalIndexes.put(match.id(), match.chunkIndex());
+                }
+            }
+            return new Slice(newTexts, newHashes, chunkIndexes, null, moved);
+        }
+        
+        void recordAdded(List<DocumentChunk> chunks) {
+            for (DocumentChunk chunk : chunks) {
+                added.add(chunk.getId());
+            }
+        }
+        
+        int kept() {
+            return kept;
+        }
+        
+        List<Long> unclaimed() {
+            List<Long> ids = new ArrayList<>(unhashed);
+            for (Deque<StoredChunk> candidates : stored.values()) {
+                for (StoredChunk chunk : candidates) {
+                    ids.add(chunk.id());
+                }
+            }
+            return ids;
+        }
+        
+        List<Long> added() {
+            synchronized (added) {
+                return new ArrayList<>(added);
+            }
+        }
+        
+        Map<Long, Integer> originalIndexes() {
+            return originalIndexes;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.documentchat.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton over a fixed set of keywords. {@link #match} finds
+ * every keyword occurring anywhere in a text (the same as calling
+ * {@code text.contains(keyword)} for each of them) in a single pass over the
+ * text, independent of the number of keywords.
+ */
+final class KeywordMatcher {
+    
+    private static final int ROOT = 0;
+    
+    private final List<Map<Character, Integer>> children = new ArrayList<>();
+    private final int[] fail;
+    private final int[][] outputs;
+    private final int keywordCount;
+    
+    KeywordMatcher(List<String> keywords) {
+        this.keywordCount = keywords.size();
+        List<List<Integer>> terminal = new ArrayList<>();
+        children.add(new HashMap<>());
+        terminal.add(new ArrayList<>());
+        for (int id = 0; id < keywords.size(); id++) {
+            int node = ROOT;
+            for (char c : keywords.get(id).toCharArray()) {
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(c, next);
+                    children.add(new HashMap<>());
+                    terminal.add(new ArrayList<>());
+                }
+                node = next;
+            }
+            terminal.get(node).add(id);
+        }
+        
+        // Breadth-first, so a node's failure target is complete before its children need it
+        this.fail = new int[children.size()];
+        this.outputs = new int[children.size()][];
+        outputs[ROOT] = toArray(terminal.get(ROOT));
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : children.get(ROOT).values()) {
+            fail[child] = ROOT;
+            outputs[child] = toArray(terminal.get(child));
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (Map.Entry<Character, Integer> edge : children.get(node).entrySet()) {
+                int child = edge.getValue();
+                fail[child] = step(fail[node], edge.getKey());
+                // A node also reports every keyword that ends at its failure target
+                int[] own = toArray(terminal.get(child));
+                int[] inherited = outputs[fail[child]];
+                int[] merged = Arrays.copyOf(own, own.length + inherited.length);
+                System.arraycopy(inherited, 0, merged, own.length, inherited.length);
+                outputs[child] = merged;
+                queue.add(child);
+            }
+        }
+    }
+    
+    /**
+     * Returns the ids (positions in the constructor's list) of the keywords
+     * found in {@code text}.
+     */
+    BitSet match(CharSequence text) {
+        BitSet found = new BitSet(keywordCount);
+        int node = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            node = step(node, text.charAt(i));
+            for (int id : outputs[node]) {
+                found.set(id);
+            }
+        }
+        return found;
+    }
+    
+    private int step(int node, char c) {
+        while (true) {
+            Integer next = children.get(node).get(c);
+            if (next != null) {
+                return next;
+            }
+            if (node == ROOT) {
+                return ROOT;
+            }
+            node = fail[node];
+        }
+    }
+    
+    private static int[] toArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.documentchat.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Micrometer instrumentation for the chat pipeline, exported through
+ * {@code /actuator/prometheus}.
+ *
+ * <p>Each stage runs as a {@code chat.stage} observation tagged with its
+ * {@code stage}, which gives a timer per stage and, when tracing is sampled
+ * ({@code management.tracing.sampling.probability}), a span under the request
+ * span. The remaining meters are plain counters and summaries:
+ * <ul>
+ *   <li>{@code chat.retrieval.candidates} / {@code chat.retrieval.lexical} / {@code chat.retrieval.selected}:
+ *       chunks scored by similarity, matched by BM25 and kept per query</li>
+ *   <li>{@code chat.cache.requests}: hits and misses per cache</li>
+ *   <li>{@code gemini.tokens}: prompt and completion tokens reported by Gemini</li>
+ *   <li>{@code chat.fallbacks}: dummy embeddings or answers used instead of Gemini, by operation and reason</li>
+ *   <li>{@code ingestion.chunk.embeddings}: chunk embeddings reused from the embedding store or computed</li>
+ *   <li>{@code ingestion.documents.duplicate}: uploads resolved to an identical existing document</li>
+ *   <li>{@code ingestion.update.chunks}: chunks kept, added and removed when a document is replaced</li>
+ *   <li>{@code ingestion.persist}: time to write one slice of chunks to the database and the vector index</li>
+ *   <li>{@code embedding.rate-limit.wait}: time embedding calls were held back by the rate limit</li>
+ * </ul>
+ */
+@Component
+public class PipelineMetrics {
+    
+    private final MeterRegistry registry;
+    private final ObservationRegistry observations;
+    private final DistributionSummary candidates;
+    private final DistributionSummary lexicalMatches;
+    private final DistributionSummary selected;
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+    
+    public PipelineMetrics(MeterRegistry registry, ObservationRegistry observations) {
+        this.registry = registry;
+        this.observations = observations;
+        this.candidates = DistributionSummary.builder("chat.retrieval.candidates")
+                .description("Chunks scored for a chat query")
+                .register(registry);
+        this.lexicalMatches = DistributionSummary.builder("chat.retrieval.lexical")
+                .description("Chunks matched by BM25 for a chat query")
+                .register(registry);
+        this.selected = DistributionSummary.builder("chat.retrieval.selected")
+                .description("Chunks used as context for a chat query")
+                .register(registry);
+        this.promptTokens = Counter.builder("gemini.tokens").tag("type", "prompt").register(registry);
+        this.completionTokens = Counter.builder("gemini.tokens").tag("type", "completion").register(registry);
+    }
+    
+    public <T> T time(String stage, Supplier<T> work) {
+        return stage(stage).observe(work);
+    }
+    
+    /**
+     * Times {@code work} from subscription until it completes, fails or is
+     * cancelled.
+     */
+    public <T> Mono<T> time(String stage, Mono<T> work) {
+        return Mono.defer(() -> {
+            Observation observation = stage(stage).start();
+            return work.doOnError(observation::error).doFinally(signal -> observation.stop());
+        });
+    }
+    
+    public <T> Flux<T> time(String stage, Flux<T> work) {
+        return Flux.defer(() -> {
+            Observation observation = stage(stage).start();
+            return work.doOnError(observation::error).doFinally(signal -> observation.stop());
+        });
+    }
+    
+    public void recordRetrieval(int scored, int lexical, int kept) {
+        candidates.record(scored);
+        lexicalMatches.record(lexical);
+        selected.record(kept);
+    }
+    
+    /**
+     * Adds the token counts from a Gemini {@code usageMetadata} node; does
+     * nothing if the response did not include one.
+     */
+    public void recordTokens(JsonNode usageMetadata) {
+        if (usageMetadata == null) {
+            return;
+        }
+        promptTokens.increment(usageMetadata.path("promptTokenCount").asLong());
+        completionTokens.increment(usageMetadata.path("candidatesTokenCount").asLong());
+    }
+    
+    public void recordFallback(String operation, String reason) {
+        registry.counter("chat.fallbacks", "operation", operation, "reason", reason).increment();
+    }
+    
+    public void recordChunkEmbeddings(int reused, int computed) {
+        registry.counter("ingestion.chunk.embeddings", "source", "reused").increment(reused);
+        registry.counter("ingestion.chunk.embeddings", "source", "computed").increment(computed);
+    }
+    
+    public void recordChunkPersist(long nanos) {
+        registry.timer("ingestion.persist").record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    public void recordRateLimitWait(Duration wait) {
+        registry.timer("embedding.rate-limit.wait").record(wait);
+    }
+    
+    public void recordDuplicateDocument() {
+        registry.counter("ingestion.documents.duplicate").increment();
+    }
+    
+    /**
+     * Records how the chunks of a replaced document were reconciled with its
+     * previous version.
+     */
+    public void recordDocumentUpdate(int kept, int added, int removed) {
+        registry.counter("ingestion.update.chunks", "change", "kept").increment(kept);
+        registry.counter("ingestion.update.chunks", "change", "added").increment(added);
+        registry.counter("ingestion.update.chunks", "change", "removed").increment(removed);
+    }
+    
+    /**
+     * Publishes a cache's own hit and miss counts as {@code chat.cache.requests}.
+     */
+    public <C> void monitorCache(String name, C cache, ToDoubleFunction<C> hits, ToDoubleFunction<C> misses) {
+        FunctionCounter.builder("chat.cache.requests", cache, hits)
+                .tags("cache", name, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("chat.cache.requests", cache, misses)
+                .tags("cache", name, "result", "miss")
+                .register(registry);
+    }
+    
+    private Observation stage(String stage) {
+        return Observation.createNotStarted("chat.stage", observations)
+                .contextualName("chat " + stage)
+                .lowCardinalityKeyValue("stage", stage);
+    }
+}
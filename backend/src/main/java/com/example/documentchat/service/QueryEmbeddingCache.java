@@ -0,0 +1,109 @@
+package com.example.documentchat.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded LRU cache of query embeddings with a time-to-live. Queries that
+ * differ only in case or whitespace share an entry. Callers compute missing
+ * embeddings themselves between {@link #getIfPresent} and {@link #put}, so a
+ * slow API call never holds the lock; concurrent misses on the same query may
+ * both compute it.
+ */
+public class QueryEmbeddingCache {
+    
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    /**
+     * @param maxSize entries kept before the least recently used is evicted; 0 disables caching
+     * @param ttlSeconds age after which an entry is recomputed; 0 keeps entries until evicted
+     */
+    QueryEmbeddingCache(int maxSize, long ttlSeconds) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlNanos = ttlSeconds > 0 ? ttlSeconds * 1_000_000_000L : Long.MAX_VALUE;
+    }
+    
+    /**
+     * Returns a copy of the cached embedding for {@code query}, or null on a miss.
+     */
+    float[] getIfPresent(String query) {
+        if (maxSize == 0) {
+            misses.incrementAndGet();
+            return null;
+        }
+        String key = normalize(query);
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && now - entry.createdAt() < ttlNanos) {
+                hits.incrementAndGet();
+                return entry.embedding().clone();
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+    
+    /**
+     * Caches {@code embedding} for {@code query} and returns it.
+     */
+    float[] put(String query, float[] embedding) {
+        if (maxSize == 0) {
+            return embedding;
+        }
+        Entry entry = new Entry(embedding.clone(), System.nanoTime());
+        synchronized (entries) {
+            entries.put(normalize(query), entry);
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return embedding;
+    }
+    
+    void invalidate(String query) {
+        synchronized (entries) {
+            entries.remove(normalize(query));
+        }
+    }
+    
+    void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+    
+    Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.get(), misses.get(), evictions.get(), size);
+    }
+    
+    static String normalize(String query) {
+        return query.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+    
+    private record Entry(float[] embedding, long createdAt) {
+    }
+    
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+}
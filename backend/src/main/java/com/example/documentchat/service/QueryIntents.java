@@ -0,0 +1,229 @@
+package com.example.documentchat.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keyword rules that classify a chat query for the offline (no API key)
+ * responder. Every keyword used by any rule is compiled once into a single
+ * {@link KeywordMatcher}, so classifying a query is one pass over its text
+ * followed by cheap set tests, however many rules there are.
+ *
+ * <p>A rule is written as alternatives separated by {@code |}, each a
+ * conjunction of terms separated by {@code &}. A term is a keyword that must
+ * occur in the lowercased query, {@code @name} for any keyword of a group, and
+ * either may be negated with {@code !}.
+ */
+final class QueryIntents {
+    
+    enum Intent {
+        OUT_OF_SCOPE,
+        COMPANY,
+        POSITION,
+        INTERVIEW_COUNT,
+        FOCUS_AREAS,
+        DATA_STRUCTURES,
+        LANGUAGES,
+        PITFALLS,
+        DURATION,
+        PLATFORM,
+        TIPS,
+        ALGORITHMS,
+        SQL,
+        PROCESS
+    }
+    
+    private static final Map<String, String[]> GROUPS = new LinkedHashMap<>();
+    static {
+        GROUPS.put("google-topic", new String[] {
+            "google", "interview", "round", "rounds", "coding", "programming", "data structure",
+            "algorithm", "technical", "hangouts", "focus", "area", "pitfall", "tip", "advice",
+            "preparation", "sql", "java", "python", "hashtable", "tree", "array", "linked list",
+            "complexity", "big-o", "bfs", "dfs", "traversal", "inorder", "postorder", "preorder",
+            "balanced", "binary", "n-ary", "trie", "red", "black", "avl", "splay", "design",
+            "system", "integration", "leadership", "googleyness", "domain", "knowledge",
+            "whiteboard", "object oriented", "o(n)", "analysis", "grouping", "subquery", "join",
+            "select", "statement", "performance", "implement", "geeksforgeeks", "hackerrank",
+            "w3schools", "topcoder", "practice", "problem", "solution", "optimize", "brute force",
+            "efficient", "clarifying", "question", "hint", "suggest", "code", "resume", "cv",
+            "career", "trajectory", "assessment", "rationalize", "passenger", "plan", "object",
+            "oriented", "basic", "char", "manipulation", "linked", "list", "subqueries", "ordering",
+            "comf", "comfortable", "strong", "skip", "people", "know"
+        });
+        GROUPS.put("question", new String[] {
+            "how many", "what", "which", "when", "where", "why", "how", "tell me", "explain",
+            "describe", "list", "name", "give", "provide", "show", "help", "can you", "do you know"
+        });
+        GROUPS.put("interview-context", new String[] {
+            "interview", "round", "coding", "technical", "google", "preparation", "company"
+        });
+        GROUPS.put("off-topic", new String[] {
+            "weather", "cook", "pasta", "food", "recipe", "capital", "france", "physics",
+            "quantum", "stock", "price", "meaning", "life", "love", "sky", "blue",
+            "salary", "microsoft", "culture", "benefits", "work-life", "balance",
+            "millionaire", "money", "cooking", "today",
+            "amazon", "facebook", "apple", "netflix", "blockchain", "machine learning",
+            "artificial intelligence", "cloud computing", "business", "marketing", "finance",
+            "investment", "entrepreneurship", "movie", "music", "books", "guitar", "games",
+            "weight", "diet", "exercise", "vitamins", "sleep", "geography", "tokyo",
+            "europe", "relativity", "gravity", "dna", "photosynthesis", "website",
+            "rain", "sunny", "temperature", "forecast", "chicken", "pizza", "rice",
+            "countries", "facts", "theory", "work", "explain", "structure", "build",
+            "start", "invest", "best", "play", "lose", "healthy", "properly", "take",
+            "better", "prepare", "answer", "questions", "ask", "after", "vs",
+            "happy", "success", "find", "do with", "should i"
+        });
+        GROUPS.put("count", new String[] {"how many", "number of", "total", "count", "amount"});
+        GROUPS.put("interview-word", new String[] {"interview", "round", "rounds", "session", "meeting"});
+        GROUPS.put("action", new String[] {"give", "have", "take", "attend", "participate", "go through"});
+        // Questions about what to study are never about the number of interviews
+        GROUPS.put("technical", new String[] {
+            "data structure", "algorithm", "programming", "coding", "study", "learn", "know",
+            "structure", "topic", "subject", "concept"
+        });
+    }
+    
+    // Queries about the interview guide; only these may mention off-topic words
+    private static final String IN_SCOPE_RULE = "@google-topic | @question & @interview-context"
+            + " | which & company & interview | which & company & this"
+            + " | which & position & interview | which & position & this"
+            + " | which & document & interview | which & document & this"
+            + " | what & position & interview | what & position & this"
+            + " | what & document & interview | what & document & this";
+    
+    private static final String OFF_TOPIC_RULE = "@off-topic";
+    
+    // Checked in this order; the responder answers with the first intent it can
+    private static final Map<Intent, String> INTENT_RULES = new LinkedHashMap<>();
+    static {
+        INTENT_RULES.put(Intent.COMPANY, "which & company | what & company | company & interview");
+        INTENT_RULES.put(Intent.POSITION, "which & position | what & position | position & interview"
+                + " | position & document | which & document | what & document | document & about");
+        INTENT_RULES.put(Intent.INTERVIEW_COUNT, "!@technical & @count & @interview-word"
+                + " | !@technical & @interview-word & @action | !@technical & how many & @action");
+        INTENT_RULES.put(Intent.FOCUS_AREAS, "focus & area | what & focus | tell & focus");
+        INTENT_RULES.put(Intent.DATA_STRUCTURES, "data structure | structure & know | structure & important"
+                + " | structure & study | structure & coding | structure & should | structure & tell | structure & which");
+        INTENT_RULES.put(Intent.LANGUAGES, "programming language | java & python | language & java | language & python"
+                + " | language & mentioned | language & recommended | language & use");
+        INTENT_RULES.put(Intent.PITFALLS, "pitfall | avoid | common & mistake");
+        INTENT_RULES.put(Intent.DURATION, "how long | duration | interview & long | interview & last"
+                + " | interview & time | tell & length");
+        INTENT_RULES.put(Intent.PLATFORM, "platform | hangouts | interview & conducted | interview & where"
+                + " | interview & technology");
+        INTENT_RULES.put(Intent.TIPS, "tip | advice | recommendation & interview");
+        INTENT_RULES.put(Intent.ALGORITHMS, "algorithm & know | algorithm & interview | algorithm & preparation"
+                + " | algorithm & topic");
+        INTENT_RULES.put(Intent.SQL, "sql & interview | sql & preparation | sql & topic | database & interview");
+        INTENT_RULES.put(Intent.PROCESS, "interview & process | interview & like | interview & work"
+                + " | interview & happen | tell & interview | what & interview");
+    }
+    
+    private static final Map<String, Integer> KEYWORD_IDS = new LinkedHashMap<>();
+    private static final Rule IN_SCOPE = compile(IN_SCOPE_RULE);
+    private static final Rule OFF_TOPIC = compile(OFF_TOPIC_RULE);
+    private static final Map<Intent, Rule> INTENTS = new LinkedHashMap<>();
+    static {
+        INTENT_RULES.forEach((intent, rule) -> INTENTS.put(intent, compile(rule)));
+    }
+    private static final KeywordMatcher MATCHER = new KeywordMatcher(new ArrayList<>(KEYWORD_IDS.keySet()));
+    
+    private QueryIntents() {}
+    
+    /**
+     * Returns the intents matched by {@code query}, in the order they should be
+     * tried. Empty, letterless and off-topic queries yield only
+     * {@link Intent#OUT_OF_SCOPE}; an empty set means no specific rule applies.
+     */
+    static EnumSet<Intent> classify(String query) {
+        String trimmed = query.trim();
+        if (trimmed.length() < 3 || !hasLetter(query)) {
+            return EnumSet.of(Intent.OUT_OF_SCOPE);
+        }
+        BitSet found = MATCHER.match(query.toLowerCase());
+        if (!IN_SCOPE.test(found) && OFF_TOPIC.test(found)) {
+            return EnumSet.of(Intent.OUT_OF_SCOPE);
+        }
+        EnumSet<Intent> intents = EnumSet.noneOf(Intent.class);
+        INTENTS.forEach((intent, rule) -> {
+            if (rule.test(found)) {
+                intents.add(intent);
+            }
+        });
+        return intents;
+    }
+    
+    private static boolean hasLetter(String query) {
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static Rule compile(String rule) {
+        List<Term[]> alternatives = new ArrayList<>();
+        for (String alternative : rule.split("\\|")) {
+            List<Term> terms = new ArrayList<>();
+            for (String token : alternative.split("&")) {
+                String term = token.trim();
+                boolean negated = term.startsWith("!");
+                if (negated) {
+                    term = term.substring(1);
+                }
+                String[] keywords = term.startsWith("@") ? group(term.substring(1)) : new String[] {term};
+                int[] ids = new int[keywords.length];
+                for (int i = 0; i < keywords.length; i++) {
+                    ids[i] = KEYWORD_IDS.computeIfAbsent(keywords[i], keyword -> KEYWORD_IDS.size());
+                }
+                terms.add(new Term(ids, negated));
+            }
+            alternatives.add(terms.toArray(new Term[0]));
+        }
+        return new Rule(alternatives.toArray(new Term[0][]));
+    }
+    
+    private static String[] group(String name) {
+        String[] keywords = GROUPS.get(name);
+        if (keywords == null) {
+            throw new IllegalStateException("Unknown keyword group @" + name);
+        }
+        return keywords;
+    }
+    
+    // Satisfied when any of its keywords was found, or none was if negated
+    private record Term(int[] ids, boolean negated) {
+        boolean test(BitSet found) {
+            for (int id : ids) {
+                if (found.get(id)) {
+                    return !negated;
+                }
+            }
+            return negated;
+        }
+    }
+    
+    private record Rule(Term[][] alternatives) {
+        boolean test(BitSet found) {
+            for (Term[] alternative : alternatives) {
+                boolean all = true;
+                for (Term term : alternative) {
+                    if (!term.test(found)) {
+                        all = false;
+                        break;
+                    }
+                }
+                if (all) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
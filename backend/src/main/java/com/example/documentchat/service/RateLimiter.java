@@ -0,0 +1,53 @@
+package com.example.documentchat.service;
+
+import java.time.Duration;
+
+/**
+ * Spaces out permits evenly at a fixed rate shared by all callers. A caller
+ * reserves its permits and is told how long to wait before using them, so
+ * reactive callers can delay instead of blocking a thread; the first
+ * reservation after an idle period goes through at once. Priority
+ * reservations only wait for earlier priority reservations and push the
+ * ordinary ones back instead, so the average rate still holds.
+ */
+final class RateLimiter {
+    
+    private final double nanosPerPermit;
+    private long nextFreeNanos = System.nanoTime();
+    private long nextPriorityFreeNanos = nextFreeNanos;
+    
+    private RateLimiter(double permitsPerSecond) {
+        this.nanosPerPermit = 1_000_000_000d / permitsPerSecond;
+    }
+    
+    /**
+     * Returns a limiter for {@code permitsPerMinute}, or null if the rate is not
+     * positive (unlimited).
+     */
+    static RateLimiter perMinute(double permitsPerMinute) {
+        return permitsPerMinute > 0 ? new RateLimiter(permitsPerMinute / 60d) : null;
+    }
+    
+    /**
+     * Reserves {@code permits} and returns how long to wait before using them.
+     */
+    synchronized Duration reserve(int permits) {
+        long now = System.nanoTime();
+        long start = Math.max(now, nextFreeNanos);
+        nextFreeNanos = start + (long) (permits * nanosPerPermit);
+        return Duration.ofNanos(start - now);
+    }
+    
+    /**
+     * Reserves {@code permits} ahead of every ordinary reservation and returns
+     * how long to wait before using them.
+     */
+    synchronized Duration reservePriority(int permits) {
+        long now = System.nanoTime();
+        long cost = (long) (permits * nanosPerPermit);
+        long start = Math.max(now, nextPriorityFreeNanos);
+        nextPriorityFreeNanos = start + cost;
+        nextFreeNanos = Math.max(now, nextFreeNanos) + cost;
+        return Duration.ofNanos(start - now);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.documentchat.service;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reader over text that is produced one segment at a time (a page range, a
+ * paragraph), so only the current segment has to be held in memory.
+ */
+abstract class SegmentReader extends Reader {
+    
+    private String segment = "";
+    private int position = 0;
+    private boolean exhausted = false;
+    
+    /**
+     * Returns the next piece of text, or null when there is none left.
+     */
+    protected abstract String nextSegment() throws IOException;
+    
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        while (position == segment.length()) {
+            if (exhausted) {
+                return -1;
+            }
+            String next = nextSegment();
+            if (next == null) {
+                exhausted = true;
+                segment = "";
+            } else {
+                segment = next;
+            }
+            position = 0;
+        }
+        int count = Math.min(length, segment.length() - position);
+        segment.getChars(position, position + count, buffer, offset);
+        position += count;
+        return count;
+    }
+    
+    @Override
+    public void close() throws IOException {
+    }
+}
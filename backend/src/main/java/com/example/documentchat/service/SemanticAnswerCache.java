@@ -0,0 +1,133 @@
+package com.example.documentchat.service;
+
+import com.example.documentchat.index.VectorOps;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recently generated chat answers, looked up by query embedding. A query whose
+ * embedding has at least {@code chat.answer-cache.similarity} cosine similarity
+ * to a cached query reuses its answer, as long as the vector index has not
+ * changed since that answer was generated. Uploads and deletes clear the cache
+ * through {@link #invalidateAll()}.
+ *
+ * <p>The radius only means something for model embeddings; the keyword-hash
+ * fallback embeddings put unrelated questions close together, so without an
+ * API key only repeated queries are served from the cache.
+ */
+@Service
+public class SemanticAnswerCache {
+    
+    // Entries kept before the least recently used is evicted; 0 disables the cache
+    @Value("${chat.answer-cache.max-size:256}")
+    private int maxSize;
+    
+    @Value("${chat.answer-cache.similarity:0.97}")
+    private float minSimilarity;
+    
+    @Value("${chat.answer-cache.ttl-seconds:3600}")
+    private long ttlSeconds;
+    
+    @Autowired
+    private PipelineMetrics metrics;
+    
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    
+    @PostConstruct
+    public void registerMetrics() {
+        metrics.monitorCache("answer", this, SemanticAnswerCache::getHits, SemanticAnswerCache::getMisses);
+    }
+    
+    /**
+     * Returns the cached answer for the closest query within the similarity
+     * radius that was answered against {@code indexVersion}, or null. With
+     * {@code matchSimilar} false only the same normalized query text matches.
+     */
+    public Answer lookup(String query, float[] queryEmbedding, long indexVersion, boolean matchSimilar) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        String key = QueryEmbeddingCache.normalize(query);
+        float queryNorm = VectorOps.norm(queryEmbedding);
+        long now = System.nanoTime();
+        synchronized (entries) {
+            entries.values().removeIf(entry -> entry.indexVersion() != indexVersion || isExpired(entry, now));
+            
+            Entry best = entries.get(key);
+            if (best == null && matchSimilar && queryNorm > 0.0f) {
+                float bestSimilarity = minSimilarity;
+                for (Entry entry : entries.values()) {
+                    if (entry.norm() == 0.0f || entry.embedding().length != queryEmbedding.length) {
+                        continue;
+                    }
+                    float similarity = VectorOps.cosine(queryEmbedding, queryNorm, entry.embedding(), entry.norm());
+                    if (similarity >= bestSimilarity) {
+                        best = entry;
+                        bestSimilarity = similarity;
+                    }
+                }
+                if (best != null) {
+                    // Refresh its LRU position
+                    entries.get(best.key());
+                }
+            }
+            if (best == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return best.answer();
+        }
+    }
+    
+    public void put(String query, float[] queryEmbedding, long indexVersion, Answer answer) {
+        if (maxSize <= 0) {
+            return;
+        }
+        String key = QueryEmbeddingCache.normalize(query);
+        float[] embedding = queryEmbedding.clone();
+        Entry entry = new Entry(key, embedding, VectorOps.norm(embedding), indexVersion, answer, System.nanoTime());
+        synchronized (entries) {
+            entries.put(key, entry);
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxSize && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+    
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    private boolean isExpired(Entry entry, long now) {
+        return ttlSeconds > 0 && now - entry.createdAt() >= ttlSeconds * 1_000_000_000L;
+    }
+    
+    public record Answer(String response, String source) {
+    }
+    
+    private record Entry(String key, float[] embedding, float norm, long indexVersion, Answer answer, long createdAt) {
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.documentchat.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits text read from a {@link Reader} into overlapping windows of
+ * {@link #CHUNK_SIZE} characters, {@link #OVERLAP} of which are shared with the
+ * previous window. Only the current window is buffered, so the full text is
+ * never materialized unless {@code keepText} asks for it.
+ *
+ * <p>Windows start every {@code CHUNK_SIZE - OVERLAP} characters and are
+ * trimmed; windows that are blank after trimming are skipped.
+ */
+class TextChunker implements Iterator<String>, AutoCloseable {
+    
+    static final int CHUNK_SIZE = 1000; // characters per chunk
+    static final int OVERLAP = 200; // overlap between chunks
+    
+    private final Reader reader;
+    private final StringBuilder text;
+    private final char[] window = new char[CHUNK_SIZE];
+    private int filled = 0;
+    private boolean started = false;
+    private boolean endOfInput = false;
+    private long charactersRead = 0;
+    private String next;
+    
+    TextChunker(Reader reader, boolean keepText) {
+        this.reader = reader;
+        this.text = keepText ? new StringBuilder() : null;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null && advance()) {
+                String chunk = new String(window, 0, filled).trim();
+                if (!chunk.isEmpty()) {
+                    next = chunk;
+                }
+            }
+            return next != null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String chunk = next;
+        next = null;
+        return chunk;
+    }
+    
+    public long getCharactersRead() {
+        return charactersRead;
+    }
+    
+    /**
+     * Returns the text read so far, or null unless the chunker was created with
+     * {@code keepText}.
+     */
+    public String getText() {
+        return text != null ? text.toString() : null;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    /**
+     * Reassembles text from its chunks in order. Each chunk repeats up to
+     * {@link #OVERLAP} characters of the previous one, so the longest such
+     * prefix that the text so far ends with is dropped. Whitespace trimmed at
+     * chunk boundaries is lost; chunks without shared text are separated by a
+     * line break.
+     */
+    static String join(List<String> chunks) {
+        StringBuilder text = new StringBuilder();
+        for (String chunk : chunks) {
+            int shared = Math.min(OVERLAP, Math.min(chunk.length(), text.length()));
+            while (shared > 0 && !endsWith(text, chunk, shared)) {
+                shared--;
+            }
+            if (shared == 0 && text.length() > 0) {
+                text.append('\n');
+            }
+            text.append(chunk, shared, chunk.length());
+        }
+        return text.toString();
+    }
+    
+    // Whether text ends with the first length characters of chunk
+    private static boolean endsWith(StringBuilder text, String chunk, int length) {
+        int offset = text.length() - length;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(offset + i) != chunk.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    // Moves the window to the next start position; false when there is none
+    private boolean advance() throws IOException {
+        if (started) {
+            // A window starts at every stride as long as some text lies beyond it
+            int stride = CHUNK_SIZE - OVERLAP;
+            if (filled <= stride) {
+                return false;
+            }
+            System.arraycopy(window, stride, window, 0, filled - stride);
+            filled -= stride;
+        }
+        started = true;
+        fill();
+        return filled > 0;
+    }
+    
+    private void fill() throws IOException {
+        while (filled < CHUNK_SIZE && !endOfInput) {
+            int count = reader.read(window, filled, CHUNK_SIZE - filled);
+            if (count < 0) {
+                endOfInput = true;
+            } else {
+                if (text != null) {
+                    text.append(window, filled, count);
+                }
+                filled += count;
+                charactersRead += count;
+            }
+        }
+    }
+}
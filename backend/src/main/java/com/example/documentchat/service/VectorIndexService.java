@@ -0,0 +1,527 @@
+package com.example.documentchat.service;
+
+import com.example.documentchat.index.Bm25Index;
+import com.example.documentchat.index.HnswIndex;
+import com.example.documentchat.index.IndexedChunk;
+import com.example.documentchat.index.ProductQuantizer;
+import com.example.documentchat.index.ScalarQuantizer;
+import com.example.documentchat.index.TopScores;
+import com.example.documentchat.index.VectorOps;
+import com.example.documentchat.index.VectorQuantizer;
+import com.example.documentchat.model.DocumentChunk;
+import com.example.documentchat.repository.DocumentChunkRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * In-memory vector index over all document chunks. It is loaded once from
+ * {@code document_chunks} at startup and then kept in sync by
+ * {@link DocumentProcessingService}, so chat queries are answered without
+ * touching the database.
+ *
+ * <p>With {@code retrieval.mode=exact} every chunk is a candidate for every
+ * query (brute-force cosine). With {@code retrieval.mode=hnsw} an HNSW graph is
+ * maintained alongside and queries only consider the {@code ef-search} nearest
+ * neighbours it returns, as long as the corpus has at least
+ * {@code retrieval.hnsw.min-chunks} chunks; smaller corpora stay exact.
+ *
+ * <p>In exact mode {@code retrieval.quantization=int8|pq} keeps only compressed
+ * codes resident. Queries scan the codes and keep the best
+ * {@code rerank-candidates}, so only those can rank semantically. With
+ * {@code rerank} enabled their full-precision vectors are then loaded from the
+ * database for exact scoring, one JDBC read per query; without it they are
+ * scored with the vectors decoded from their codes and queries stay in memory,
+ * at the cost of approximate similarities. Product quantization needs
+ * {@code pq.training-size} chunks to train its codebooks; smaller corpora use
+ * int8 until that size is reached.
+ *
+ * <p>Alongside the vectors a {@link Bm25Index} over the chunk text is kept in
+ * sync for lexical retrieval ({@link #findLexicalMatches}).
+ *
+ * <p>With {@code retrieval.index-snapshot} set, the HNSW graph and trained
+ * product quantizer are saved to that file on shutdown and restored at startup
+ * instead of being recomputed, provided the database still holds exactly the
+ * chunks they were built for (see {@link VectorIndexSnapshot}).
+ */
+@Service
+public class VectorIndexService {
+    
+    private static final Logger log = LoggerFactory.getLogger(VectorIndexService.class);
+    
+    @Autowired
+    private DocumentChunkRepository documentChunkRepository;
+    
+    @Autowired
+    private EmbeddingService embeddingService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Value("${retrieval.mode:exact}")
+    private String retrievalMode;
+    
+    @Value("${retrieval.hnsw.m:16}")
+    private int hnswM;
+    
+    @Value("${retrieval.hnsw.ef-construction:100}")
+    private int hnswEfConstruction;
+    
+    @Value("${retrieval.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+    
+    @Value("${retrieval.hnsw.min-chunks:10000}")
+    private int hnswMinChunks;
+    
+    @Value("${retrieval.hnsw.max-tombstone-ratio:0.3}")
+    private double hnswMaxTombstoneRatio;
+    
+    @Value("${retrieval.quantization:none}")
+    private String quantization;
+    
+    @Value("${retrieval.quantization.rerank-candidates:50}")
+    private int rerankCandidates;
+    
+    // Re-score candidates with full-precision vectors read from the database
+    @Value("${retrieval.quantization.rerank:true}")
+    private boolean rerank;
+    
+    @Value("${retrieval.quantization.pq.subspaces:96}")
+    private int pqSubspaces;
+    
+    @Value("${retrieval.quantization.pq.training-size:4096}")
+    private int pqTrainingSize;
+    
+    @Value("${retrieval.quantization.pq.iterations:10}")
+    private int pqIterations;
+    
+    // File for the graph and codebooks between restarts; empty disables snapshots
+    @Value("${retrieval.index-snapshot:}")
+    private String snapshotFile;
+    
+    // Chunks and the quantizer that encoded them are swapped together on rebuild
+    private volatile IndexState state = new IndexState(new ConcurrentSkipListMap<>(), null, new Bm25Index());
+    
+    private volatile HnswIndex graph;
+    
+    // Bumped on every change to the indexed chunk set
+    private final AtomicLong version = new AtomicLong();
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void load() {
+        long start = System.currentTimeMillis();
+        List<DocumentChunk> documentChunks = documentChunkRepository.findAllChunks();
+        VectorIndexSnapshot snapshot = readSnapshot(documentChunks);
+        build(documentChunks, snapshot);
+        if (snapshot == null) {
+            writeSnapshot();
+        }
+        log.info("Vector index loaded with {} chunks in {} ms (mode={}, quantization={}, snapshot={})",
+                state.chunks().size(), System.currentTimeMillis() - start, retrievalMode,
+                quantizerName(state.quantizer()), snapshot != null ? "restored" : "none");
+    }
+    
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        build(documentChunkRepository.findAllChunks(), null);
+        log.info("Vector index rebuilt with {} chunks (mode={}, quantization={})",
+                state.chunks().size(), retrievalMode, quantizerName(state.quantizer()));
+    }
+    
+    @PreDestroy
+    public synchronized void writeSnapshot() {
+        if (snapshotFile.isBlank()) {
+            return;
+        }
+        IndexState current = state;
+        ProductQuantizer quantizer = current.quantizer() instanceof ProductQuantizer pq ? pq : null;
+        if (quantizer == null && graph == null) {
+            // Nothing that takes longer to rebuild than to read back
+            return;
+        }
+        Map<Long, byte[]> codes = new HashMap<>();
+        if (quantizer != null) {
+            for (IndexedChunk chunk : current.chunks().values()) {
+                codes.put(chunk.getId(), chunk.getCodes());
+            }
+        }
+        try {
+            VectorIndexSnapshot.write(Path.of(snapshotFile), snapshotSettings(), current.chunks().keySet(),
+                    quantizer, codes, graph);
+            log.info("Vector index snapshot written to {}", snapshotFile);
+        } catch (IOException e) {
+            log.warn("Could not write vector index snapshot {}: {}", snapshotFile, e.getMessage());
+        }
+    }
+    
+    private void build(List<DocumentChunk> documentChunks, VectorIndexSnapshot snapshot) {
+        VectorQuantizer quantizer = snapshot != null && snapshot.quantizer() != null
+                ? snapshot.quantizer() : createQuantizer(documentChunks);
+        Map<Long, byte[]> knownCodes = snapshot != null ? snapshot.codes() : Collections.emptyMap();
+        
+        // Keyed by chunk id so iteration order matches the table's insertion order
+        IndexState rebuilt = new IndexState(new ConcurrentSkipListMap<>(), quantizer, new Bm25Index());
+        for (DocumentChunk chunk : documentChunks) {
+            add(rebuilt, chunk, knownCodes.get(chunk.getId()));
+        }
+        state = rebuilt;
+        version.incrementAndGet();
+        if (!restoreGraph(snapshot)) {
+            rebuildGraph();
+        }
+    }
+    
+    public synchronized void addChunks(Collection<DocumentChunk> documentChunks) {
+        IndexState current = state;
+        for (DocumentChunk chunk : documentChunks) {
+            IndexedChunk indexed = add(current, chunk, null);
+            if (indexed != null && graph != null) {
+                graph.add(indexed.getId(), indexed.getEmbedding());
+            }
+        }
+        version.incrementAndGet();
+        if (isProductQuantization() && !(current.quantizer() instanceof ProductQuantizer)
+                && current.chunks().size() >= pqTrainingSize) {
+            // Enough data to train codebooks: re-encode everything with PQ. Called
+            // on this instance, rebuild() would bypass its @Transactional proxy
+            transactionTemplate.executeWithoutResult(status -> rebuild());
+        }
+    }
+    
+    public synchronized void removeDocument(Long documentId) {
+        remove(chunk -> chunk.getDocumentId().equals(documentId));
+    }
+    
+    public synchronized void removeChunks(Collection<Long> chunkIds) {
+        Set<Long> ids = new HashSet<>(chunkIds);
+        remove(chunk -> ids.contains(chunk.getId()));
+    }
+    
+    /**
+     * Renumbers resident chunks whose position in their document changed;
+     * their vectors, codes and graph nodes are untouched.
+     */
+    public synchronized void moveChunks(Map<Long, Integer> chunkIndexes) {
+        ConcurrentSkipListMap<Long, IndexedChunk> chunks = state.chunks();
+        chunkIndexes.forEach((id, chunkIndex) ->
+                chunks.computeIfPresent(id, (key, chunk) -> chunk.withChunkIndex(chunkIndex)));
+        version.incrementAndGet();
+    }
+    
+    private void remove(Predicate<IndexedChunk> filter) {
+        IndexState indexed = state;
+        List<IndexedChunk> removed = new ArrayList<>();
+        indexed.chunks().values().removeIf(chunk -> {
+            if (filter.test(chunk)) {
+                removed.add(chunk);
+                return true;
+            }
+            return false;
+        });
+        Map<Long, String> removedTexts = new HashMap<>();
+        for (IndexedChunk chunk : removed) {
+            removedTexts.put(chunk.getId(), chunk.getText());
+        }
+        indexed.lexical().removeAll(removedTexts);
+        version.incrementAndGet();
+        HnswIndex current = graph;
+        if (current != null) {
+            for (IndexedChunk chunk : removed) {
+                current.remove(chunk.getId());
+            }
+            if (current.tombstoneRatio() > hnswMaxTombstoneRatio) {
+                rebuildGraph();
+            }
+        }
+    }
+    
+    public Collection<IndexedChunk> getChunks() {
+        return Collections.unmodifiableCollection(state.chunks().values());
+    }
+    
+    /**
+     * Returns the chunks worth scoring for {@code queryEmbedding}: every chunk in
+     * exact mode, the approximate nearest neighbours in HNSW mode, or the best
+     * approximate matches with their re-ranking vectors when quantized.
+     */
+    public Collection<IndexedChunk> findCandidates(float[] queryEmbedding) {
+        IndexState current = state;
+        if (isZero(queryEmbedding)) {
+            // No direction to search in; only query-independent signals apply
+            return getChunks();
+        }
+        if (current.quantizer() != null) {
+            return findQuantizedCandidates(current, queryEmbedding);
+        }
+        HnswIndex currentGraph = graph;
+        if (currentGraph == null || current.chunks().size() < hnswMinChunks) {
+            return getChunks();
+        }
+        long[] ids = currentGraph.search(queryEmbedding, hnswEfSearch, hnswEfSearch);
+        List<IndexedChunk> candidates = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            IndexedChunk chunk = current.chunks().get(id);
+            if (chunk != null) {
+                candidates.add(chunk);
+            }
+        }
+        return candidates;
+    }
+    
+    /**
+     * Returns up to {@code limit} chunks ranked by BM25 relevance of their text
+     * to {@code query}, best first; only chunks sharing a term with the query.
+     */
+    public List<IndexedChunk> findLexicalMatches(String query, int limit) {
+        IndexState current = state;
+        long[] ids = current.lexical().search(query, limit);
+        List<IndexedChunk> matches = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            IndexedChunk chunk = current.chunks().get(id);
+            if (chunk != null) {
+                matches.add(chunk);
+            }
+        }
+        return matches;
+    }
+    
+    public boolean isEmpty() {
+        return state.chunks().isEmpty();
+    }
+    
+    public int size() {
+        return state.chunks().size();
+    }
+    
+    /**
+     * True when {@link #findCandidates} reads full-precision vectors from the
+     * database for re-ranking, i.e. when it blocks on JDBC.
+     */
+    public boolean isRerankingFromDatabase() {
+        return state.quantizer() != null && rerank;
+    }
+    
+    /**
+     * Changes whenever chunks are added or removed, so results computed against
+     * one version can be recognised as stale.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    private List<IndexedChunk> findQuantizedCandidates(IndexState current, float[] queryEmbedding) {
+        VectorQuantizer.Scorer scorer = current.quantizer().scorer(queryEmbedding);
+        TopScores<IndexedChunk> top = new TopScores<>(rerankCandidates);
+        for (IndexedChunk chunk : current.chunks().values()) {
+            // Approximate cosine; the query norm is the same for every chunk
+            top.offer(chunk, chunk.getNorm() == 0.0f ? 0.0f : scorer.score(chunk.getCodes()) / chunk.getNorm());
+        }
+        List<IndexedChunk> approximate = top.toSortedList();
+        if (!rerank) {
+            List<IndexedChunk> candidates = new ArrayList<>(approximate.size());
+            for (IndexedChunk chunk : approximate) {
+                candidates.add(chunk.withEmbedding(current.quantizer().decode(chunk.getCodes())));
+            }
+            return candidates;
+        }
+        
+        // Re-rank with the full-precision vectors from the database
+        List<Long> ids = new ArrayList<>(approximate.size());
+        for (IndexedChunk chunk : approximate) {
+            ids.add(chunk.getId());
+        }
+        Map<Long, float[]> vectors = new HashMap<>();
+        for (Object[] row : documentChunkRepository.findEmbeddingVectorsByIds(ids)) {
+            float[] vector = DocumentChunk.bytesToArray((byte[]) row[1]);
+            if (vector != null) {
+                vectors.put((Long) row[0], prepare(vector));
+            }
+        }
+        List<IndexedChunk> candidates = new ArrayList<>(approximate.size());
+        for (IndexedChunk chunk : approximate) {
+            float[] vector = vectors.get(chunk.getId());
+            if (vector != null) {
+                candidates.add(chunk.withEmbedding(vector));
+            }
+        }
+        return candidates;
+    }
+    
+    // knownCodes are the chunk's codes under the target's quantizer, if already computed
+    private IndexedChunk add(IndexState target, DocumentChunk chunk, byte[] knownCodes) {
+        float[] embedding = chunk.getEmbeddingAsArray();
+        if (chunk.getId() == null || embedding == null) {
+            return null;
+        }
+        prepare(embedding);
+        IndexedChunk indexed;
+        if (target.quantizer() != null) {
+            indexed = new IndexedChunk(
+                    chunk.getId(),
+                    chunk.getDocument().getId(),
+                    chunk.getChunkIndex(),
+                    chunk.getText(),
+                    knownCodes != null ? knownCodes : target.quantizer().encode(embedding),
+                    VectorOps.norm(embedding));
+        } else {
+            indexed = new IndexedChunk(
+                    chunk.getId(),
+                    chunk.getDocument().getId(),
+                    chunk.getChunkIndex(),
+                    chunk.getText(),
+                    embedding);
+        }
+        target.chunks().put(chunk.getId(), indexed);
+        target.lexical().add(chunk.getId(), chunk.getText());
+        return indexed;
+    }
+    
+    private float[] prepare(float[] embedding) {
+        if (embeddingService.isNormalizing()) {
+            // Rows written before normalization was enabled may not be unit length
+            VectorOps.normalize(embedding);
+        }
+        return embedding;
+    }
+    
+    private VectorQuantizer createQuantizer(List<DocumentChunk> documentChunks) {
+        if ("hnsw".equalsIgnoreCase(retrievalMode) || "none".equalsIgnoreCase(quantization)) {
+            // The HNSW graph scores full-precision vectors itself
+            return null;
+        }
+        if (isProductQuantization() && documentChunks.size() >= pqTrainingSize) {
+            try {
+                return ProductQuantizer.train(trainingSample(documentChunks), pqSubspaces, pqIterations, 42L);
+            } catch (IllegalArgumentException e) {
+                log.warn("Cannot train product quantizer, using int8: {}", e.getMessage());
+            }
+        }
+        return new ScalarQuantizer();
+    }
+    
+    private List<float[]> trainingSample(List<DocumentChunk> documentChunks) {
+        List<DocumentChunk> shuffled = new ArrayList<>(documentChunks);
+        Collections.shuffle(shuffled, new Random(42L));
+        List<float[]> sample = new ArrayList<>(pqTrainingSize);
+        int dimension = -1;
+        for (DocumentChunk chunk : shuffled) {
+            float[] embedding = chunk.getEmbeddingAsArray();
+            if (embedding == null || (dimension >= 0 && embedding.length != dimension)) {
+                continue;
+            }
+            dimension = embedding.length;
+            sample.add(prepare(embedding));
+            if (sample.size() == pqTrainingSize) {
+                break;
+            }
+        }
+        return sample;
+    }
+    
+    private boolean isProductQuantization() {
+        return "pq".equalsIgnoreCase(quantization);
+    }
+    
+    private static String quantizerName(VectorQuantizer quantizer) {
+        if (quantizer instanceof ProductQuantizer) return "pq";
+        if (quantizer instanceof ScalarQuantizer) return "int8";
+        return "none";
+    }
+    
+    private VectorIndexSnapshot readSnapshot(List<DocumentChunk> documentChunks) {
+        if (snapshotFile.isBlank()) {
+            return null;
+        }
+        List<Long> ids = new ArrayList<>(documentChunks.size());
+        for (DocumentChunk chunk : documentChunks) {
+            ids.add(chunk.getId());
+        }
+        try {
+            VectorIndexSnapshot snapshot = VectorIndexSnapshot.read(Path.of(snapshotFile), snapshotSettings(), ids);
+            if (snapshot == null) {
+                log.info("No up-to-date vector index snapshot at {}, rebuilding", snapshotFile);
+            }
+            return snapshot;
+        } catch (IOException e) {
+            log.warn("Could not read vector index snapshot {}, rebuilding: {}", snapshotFile, e.getMessage());
+            return null;
+        }
+    }
+    
+    private boolean restoreGraph(VectorIndexSnapshot snapshot) {
+        if (snapshot == null || !"hnsw".equalsIgnoreCase(retrievalMode)) {
+            return false;
+        }
+        IndexState current = state;
+        try {
+            HnswIndex restored = snapshot.graph(id -> {
+                IndexedChunk chunk = current.chunks().get(id);
+                return chunk != null ? chunk.getEmbedding() : null;
+            });
+            if (restored == null) {
+                return false;
+            }
+            graph = restored;
+            return true;
+        } catch (IOException e) {
+            log.warn("Could not restore HNSW graph from snapshot, rebuilding: {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    // Everything a snapshot's contents depend on besides the chunks
+    private String snapshotSettings() {
+        return "mode=" + retrievalMode.toLowerCase()
+                + ";m=" + hnswM + ";ef-construction=" + hnswEfConstruction
+                + ";quantization=" + quantization.toLowerCase()
+                + ";pq=" + pqSubspaces + "/" + pqTrainingSize + "/" + pqIterations
+                + ";normalize=" + embeddingService.isNormalizing();
+    }
+    
+    private synchronized void rebuildGraph() {
+        if (!"hnsw".equalsIgnoreCase(retrievalMode)) {
+            graph = null;
+            return;
+        }
+        HnswIndex rebuilt = new HnswIndex(hnswM, hnswEfConstruction);
+        for (IndexedChunk chunk : state.chunks().values()) {
+            rebuilt.add(chunk.getId(), chunk.getEmbedding());
+        }
+        graph = rebuilt;
+    }
+    
+    private static boolean isZero(float[] vector) {
+        for (float value : vector) {
+            if (value != 0.0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private record IndexState(ConcurrentSkipListMap<Long, IndexedChunk> chunks, VectorQuantizer quantizer, Bm25Index lexical) {
+    }
+}
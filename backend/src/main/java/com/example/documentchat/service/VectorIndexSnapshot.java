@@ -0,0 +1,148 @@
+package com.example.documentchat.service;
+
+import com.example.documentchat.index.HnswIndex;
+import com.example.documentchat.index.ProductQuantizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/**
+ * The part of the vector index that is expensive to recompute, saved to disk
+ * so that a restart against a persistent database only has to read it back:
+ * trained product quantization codebooks with every chunk's codes, and the
+ * HNSW graph. Chunk text and vectors are always loaded from the database.
+ *
+ * <p>A snapshot records the index settings and a fingerprint of the chunk ids
+ * it was written for; {@link #read} ignores it if either no longer matches.
+ */
+final class VectorIndexSnapshot {
+    
+    private static final int MAGIC = 0x44435649; // "DCVI"
+    private static final int FORMAT_VERSION = 1;
+    
+    private final ProductQuantizer quantizer;
+    private final Map<Long, byte[]> codes;
+    private final byte[] graph;
+    
+    private VectorIndexSnapshot(ProductQuantizer quantizer, Map<Long, byte[]> codes, byte[] graph) {
+        this.quantizer = quantizer;
+        this.codes = codes;
+        this.graph = graph;
+    }
+    
+    ProductQuantizer quantizer() {
+        return quantizer;
+    }
+    
+    Map<Long, byte[]> codes() {
+        return codes;
+    }
+    
+    /**
+     * Restores the saved graph with the live nodes' vectors from
+     * {@code vectors}, or returns null if no graph was saved.
+     */
+    HnswIndex graph(LongFunction<float[]> vectors) throws IOException {
+        if (graph == null) {
+            return null;
+        }
+        return HnswIndex.readFrom(new DataInputStream(new ByteArrayInputStream(graph)), vectors);
+    }
+    
+    /**
+     * Returns the snapshot at {@code path} if it was written with
+     * {@code settings} for exactly the chunks {@code chunkIds}, otherwise null.
+     */
+    static VectorIndexSnapshot read(Path path, String settings, Collection<Long> chunkIds) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(settings)
+                    || in.readInt() != chunkIds.size() || in.readLong() != fingerprint(chunkIds)) {
+                return null;
+            }
+            ProductQuantizer quantizer = null;
+            Map<Long, byte[]> codes = new HashMap<>();
+            if (in.readBoolean()) {
+                quantizer = ProductQuantizer.readFrom(in);
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    long id = in.readLong();
+                    byte[] chunkCodes = new byte[quantizer.getSubspaces()];
+                    in.readFully(chunkCodes);
+                    codes.put(id, chunkCodes);
+                }
+            }
+            byte[] graph = null;
+            if (in.readBoolean()) {
+                graph = new byte[in.readInt()];
+                in.readFully(graph);
+            }
+            return new VectorIndexSnapshot(quantizer, codes, graph);
+        }
+    }
+    
+    /**
+     * Writes a snapshot for the chunks {@code chunkIds}, replacing the file at
+     * {@code path} atomically. {@code quantizer} and {@code graph} may be null.
+     */
+    static void write(Path path, String settings, Collection<Long> chunkIds, ProductQuantizer quantizer,
+                      Map<Long, byte[]> codes, HnswIndex graph) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(settings);
+                out.writeInt(chunkIds.size());
+                out.writeLong(fingerprint(chunkIds));
+                out.writeBoolean(quantizer != null);
+                if (quantizer != null) {
+                    quantizer.writeTo(out);
+                    out.writeInt(codes.size());
+                    for (Map.Entry<Long, byte[]> entry : codes.entrySet()) {
+                        out.writeLong(entry.getKey());
+                        out.write(entry.getValue());
+                    }
+                }
+                out.writeBoolean(graph != null);
+                if (graph != null) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    graph.writeTo(new DataOutputStream(bytes));
+                    out.writeInt(bytes.size());
+                    bytes.writeTo(out);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    // Order-independent hash of the id set
+    private static long fingerprint(Collection<Long> ids) {
+        long hash = 0;
+        for (long id : ids) {
+            long z = id + 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            hash += z ^ (z >>> 31);
+        }
+        return hash;
+    }
+}
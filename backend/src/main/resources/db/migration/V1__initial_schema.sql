@@ -0,0 +1,26 @@
+-- Documents and their embedded chunks, as created by Hibernate before migrations were introduced
+
+CREATE TABLE documents (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    file_name VARCHAR(255) NOT NULL,
+    file_type VARCHAR(255) NOT NULL,
+    file_size BIGINT NOT NULL,
+    extracted_text TEXT,
+    upload_time TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE document_chunks (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    document_id BIGINT NOT NULL,
+    chunk_index INTEGER NOT NULL,
+    text TEXT,
+    -- Little-endian float32 values
+    embedding_vector VARBINARY(16384),
+    -- Legacy JSON array, converted to embedding_vector at startup
+    embedding TEXT,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_document_chunks_document FOREIGN KEY (document_id) REFERENCES documents (id)
+);
+
+CREATE INDEX idx_document_chunks_document ON document_chunks (document_id, chunk_index);
@@ -0,0 +1,13 @@
+-- SHA-256 of the uploaded file, so identical uploads resolve to the existing document
+ALTER TABLE documents ADD COLUMN content_hash VARCHAR(64);
+CREATE INDEX idx_documents_content_hash ON documents (content_hash);
+
+-- SHA-256 of the normalized chunk text
+ALTER TABLE document_chunks ADD COLUMN content_hash VARCHAR(64);
+
+-- Embeddings by embedding space and chunk hash, kept when the chunks that produced them are deleted
+CREATE TABLE chunk_embeddings (
+    embedding_key VARCHAR(255) NOT NULL,
+    embedding_vector VARBINARY(16384) NOT NULL,
+    PRIMARY KEY (embedding_key)
+);
@@ -0,0 +1,5 @@
+-- Chunk ids come from a sequence Hibernate allocates from in blocks of 50, so chunk inserts can be
+-- sent as JDBC batches (identity columns force one round trip per row to read back the id).
+-- Existing rows keep their ids; the sequence starts past them.
+CREATE SEQUENCE document_chunks_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE document_chunks_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 51 FROM document_chunks);
@@ -0,0 +1,43 @@
+#!/bin/bash
+# Compares chat throughput under many concurrent slow LLM calls for the three
+# execution modes: blocking on platform threads, blocking on virtual threads
+# and async. Runs load_test_chat.py against stub_llm_server.py for each mode.
+#
+# Virtual threads need Java 21: build with `mvn -Pjava21 package` and run this
+# script with a Java 21 `java` on the PATH, otherwise that mode falls back to
+# platform threads.
+#
+# Usage: ./benchmark_execution_modes.sh [concurrency] [requests] [llm latency seconds]
+
+CONCURRENCY=${1:-1000}
+REQUESTS=${2:-5000}
+LATENCY=${3:-1.0}
+ROOT=$(cd "$(dirname "$0")" && pwd)
+JAR="$ROOT/backend/target/document-chat-backend-0.0.1-SNAPSHOT.jar"
+
+python3 "$ROOT/stub_llm_server.py" --latency "$LATENCY" > /dev/null &
+STUB_PID=$!
+trap 'kill $STUB_PID 2>/dev/null' EXIT
+
+run_mode() {
+    local name=$1
+    shift
+    echo ""
+    echo "### $name"
+    java --add-modules jdk.incubator.vector -jar "$JAR" \
+        --gemini.api.key=stub --gemini.api.base-url=http://127.0.0.1:9999 \
+        --chat.answer-cache.max-size=0 --embedding.query-cache.max-size=0 \
+        --spring.jpa.show-sql=false "$@" > "/tmp/benchmark-$name.log" 2>&1 &
+    local app_pid=$!
+    for _ in $(seq 1 60); do
+        curl -s -o /dev/null http://localhost:8080/api/documents && break
+        sleep 1
+    done
+    python3 "$ROOT/load_test_chat.py" --concurrency "$CONCURRENCY" --requests "$REQUESTS" --pid "$app_pid" | tail -4
+    kill $app_pid
+    wait $app_pid 2>/dev/null
+}
+
+run_mode platform-blocking --chat.execution=blocking
+run_mode virtual-blocking --spring.profiles.active=virtual-threads
+run_mode async --chat.execution=async
@@ -14,12 +14,26 @@ CHAT_ENDPOINT = f"{BASE_URL}/api/chat/message"
 DOCUMENTS_ENDPOINT = f"{BASE_URL}/api/documents"
 UPLOAD_ENDPOINT = f"{BASE_URL}/api/documents/upload"
 
+def wait_for_ingestion(job, timeout=120):
+    """Poll the ingestion job returned by the upload endpoint until it finishes"""
+    deadline = time.time() + timeout
+    while time.time() < deadline:
+        status = requests.get(f"{DOCUMENTS_ENDPOINT}/jobs/{job['id']}").json()
+        if status['status'] == 'COMPLETED':
+            return True
+        if status['status'] == 'FAILED':
+            print(f"❌ Document processing failed: {status.get('error')}")
+            return False
+        time.sleep(1)
+    print("❌ Timed out waiting for document processing")
+    return False
+
 def upload_document():
     """Upload the Google interview guide document"""
     try:
         # Check if document already exists
         response = requests.get(DOCUMENTS_ENDPOINT)
-        if response.status_code == 200 and response.json():
+        if response.status_code == 200 and response.json()["totalElements"] > 0:
             print("✅ Document already uploaded")
             return True
             
@@ -33,9 +47,9 @@ def upload_document():
             files = {'file': ('InterviewGuideAtGoogle.pdf', f, 'application/pdf')}
             response = requests.post(UPLOAD_ENDPOINT, files=files, timeout=30)
             
-        if response.status_code == 200:
+        if response.status_code in (200, 202):
             print("✅ Document uploaded successfully")
-            return True
+            return wait_for_ingestion(response.json())
         else:
             print(f"❌ Failed to upload document: {response.status_code} - {response.text}")
             return False
@@ -16,8 +16,13 @@ def upload_document():
         try:
             response = requests.post(f"{DOCUMENTS_ENDPOINT}/upload", files=files)
             response.raise_for_status()
-            print("✅ Document uploaded successfully")
-            return response.json()
+            job = response.json()
+            # Upload is asynchronous: wait for the ingestion job to finish
+            while job['status'] not in ('COMPLETED', 'FAILED'):
+                time.sleep(1)
+                job = requests.get(f"{DOCUMENTS_ENDPOINT}/jobs/{job['id']}").json()
+            print(f"✅ Document uploaded successfully ({job['status']})")
+            return job
         except requests.exceptions.RequestException as e:
             if response.status_code == 409:  # Conflict, document already exists
                 print("✅ Document already uploaded")
@@ -9,6 +9,25 @@ interface Document {
   fileType: string;
   fileSize: number;
   uploadTime: string;
+  chunkCount: number;
+  textStored: boolean;
+}
+
+interface DocumentPage {
+  content: Document[];
+  totalElements: number;
+}
+
+interface IngestionJob {
+  id: string;
+  fileName: string;
+  status: 'QUEUED' | 'RUNNING' | 'COMPLETED' | 'FAILED';
+  stage: string;
+  totalChunks: number;
+  embeddedChunks: number;
+  persistedChunks: number;
+  documentId: number | null;
+  error: string | null;
 }
 
 interface ChatMessage {
@@ -16,6 +35,13 @@ interface ChatMessage {
   response: string;
   timestamp: string;
   source: string;
+  sources?: ChatSource[];
+}
+
+interface ChatSource {
+  documentId: number;
+  chunkIndex: number;
+  excerpt: string;
 }
 
 @Component({
@@ -33,6 +59,7 @@ export class AppComponent implements OnInit {
   selectedFile: File | null = null;
   statusMessage: string = '';
   statusType: 'success' | 'error' | '' = '';
+  streamingMessage: ChatMessage | null = null;
 
   constructor(private http: HttpClient) {}
 
@@ -79,15 +106,15 @@ export class AppComponent implements OnInit {
     const formData = new FormData();
     formData.append('file', this.selectedFile);
 
-    this.http.post<Document>('http://localhost:8080/api/documents/upload', formData)
+    this.http.post<IngestionJob>('http://localhost:8080/api/documents/upload', formData)
       .subscribe({
-        next: (uploadedDocument) => {
-          this.documents.push(uploadedDocument);
-          this.showStatus('Document uploaded successfully!', 'success');
+        next: (job) => {
+          this.showStatus('Processing document...', 'success');
           this.selectedFile = null;
           // Reset file input
           const fileInput = document.querySelector('input[type="file"]') as HTMLInputElement;
           if (fileInput) fileInput.value = '';
+          this.pollIngestionJob(job.id);
         },
         error: (error) => {
           console.error('Upload error:', error);
@@ -96,6 +123,26 @@ export class AppComponent implements OnInit {
       });
   }
 
+  pollIngestionJob(jobId: string) {
+    this.http.get<IngestionJob>(`http://localhost:8080/api/documents/jobs/${jobId}`)
+      .subscribe({
+        next: (job) => {
+          if (job.status === 'COMPLETED') {
+            this.loadDocuments();
+            this.showStatus('Document uploaded successfully!', 'success');
+          } else if (job.status === 'FAILED') {
+            this.showStatus('Error processing document. Please try again.', 'error');
+          } else {
+            setTimeout(() => this.pollIngestionJob(jobId), 1000);
+          }
+        },
+        error: (error) => {
+          console.error('Ingestion status error:', error);
+          this.showStatus('Error processing document. Please try again.', 'error');
+        }
+      });
+  }
+
   deleteDocument(id: number) {
     this.http.delete(`http://localhost:8080/api/documents/${id}`)
       .subscribe({
@@ -125,30 +172,90 @@ export class AppComponent implements OnInit {
     this.newMessage = '';
     this.isLoading = true;
 
-    this.http.post<ChatMessage>('http://localhost:8080/api/chat/message', { message: currentMessage })
-      .subscribe({
-        next: (response) => {
-          this.messages.push(response);
-          this.isLoading = false;
-        },
-        error: (error) => {
-          console.error('Chat error:', error);
-          this.messages.push({
-            message: '',
-            response: 'Sorry, there was an error processing your request.',
-            timestamp: new Date().toISOString(),
-            source: 'error'
-          });
-          this.isLoading = false;
-        }
+    this.streamMessage(currentMessage).catch((error) => {
+      console.error('Chat error:', error);
+      if (this.streamingMessage) {
+        this.messages.splice(this.messages.indexOf(this.streamingMessage), 1);
+      }
+      this.messages.push({
+        message: '',
+        response: 'Sorry, there was an error processing your request.',
+        timestamp: new Date().toISOString(),
+        source: 'error'
       });
+    }).finally(() => {
+      this.streamingMessage = null;
+      this.isLoading = false;
+    });
+  }
+
+  // Reads the server-sent events from /api/chat/stream and renders tokens as they arrive
+  private async streamMessage(message: string) {
+    const response = await fetch('http://localhost:8080/api/chat/stream', {
+      method: 'POST',
+      headers: { 'Content-Type': 'application/json', 'Accept': 'text/event-stream' },
+      body: JSON.stringify({ message })
+    });
+    if (!response.ok || !response.body) {
+      throw new Error(`Chat stream failed with status ${response.status}`);
+    }
+
+    const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = '';
+    while (true) {
+      const { value, done } = await reader.read();
+      if (done) break;
+      buffer = (buffer + value).replace(/\r\n/g, '\n');
+      let boundary;
+      while ((boundary = buffer.indexOf('\n\n')) >= 0) {
+        this.handleStreamEvent(buffer.substring(0, boundary));
+        buffer = buffer.substring(boundary + 2);
+      }
+    }
+  }
+
+  private handleStreamEvent(block: string) {
+    let event = 'message';
+    const data: string[] = [];
+    for (const line of block.split('\n')) {
+      if (line.startsWith('event:')) {
+        event = line.substring(6).trim();
+      } else if (line.startsWith('data:')) {
+        data.push(line.substring(5).replace(/^ /, ''));
+      }
+    }
+    if (data.length === 0) return;
+    const payload = JSON.parse(data.join('\n'));
+
+    if (!this.streamingMessage) {
+      this.streamingMessage = {
+        message: '',
+        response: '',
+        timestamp: new Date().toISOString(),
+        source: 'documents'
+      };
+      this.messages.push(this.streamingMessage);
+    }
+    switch (event) {
+      case 'sources':
+        this.streamingMessage.sources = payload;
+        break;
+      case 'token':
+        this.streamingMessage.response += payload.text;
+        break;
+      case 'done':
+        this.streamingMessage.response = payload.response;
+        this.streamingMessage.source = payload.source;
+        this.streamingMessage.timestamp = payload.timestamp;
+        break;
+    }
   }
 
   loadDocuments() {
-    this.http.get<Document[]>('http://localhost:8080/api/documents')
+    this.http.get<DocumentPage>('http://localhost:8080/api/documents?size=100')
       .subscribe({
-        next: (documents) => {
-          this.documents = documents;
+        next: (page) => {
+          this.documents = page.content;
         },
         error: (error) => {
           console.error('Error loading documents:', error);
@@ -0,0 +1,142 @@
+#!/usr/bin/env python3
+"""
+Concurrent chat load test for the Document Chat backend
+Keeps --concurrency chat requests in flight against /api/chat/message and
+reports throughput, latency percentiles and, with --pid, the backend's JVM
+thread count while under load.
+
+Run the backend against stub_llm_server.py so every chat waits on a slow LLM
+call, with the answer and embedding caches off so each request reaches it:
+    python3 stub_llm_server.py --latency 1.0
+    java -jar target/document-chat-backend-0.0.1-SNAPSHOT.jar \\
+        --gemini.api.key=stub --gemini.api.base-url=http://127.0.0.1:9999 \\
+        --chat.answer-cache.max-size=0 --embedding.query-cache.max-size=0
+    python3 load_test_chat.py --concurrency 2000 --requests 10000 --pid <backend pid>
+"""
+
+import argparse
+import asyncio
+import json
+import statistics
+import time
+import urllib.request
+import uuid
+from typing import List, Optional
+
+SAMPLE_DOCUMENT = (
+    "Google interview guide. This will comprise of (5) 45-60 minute interviews, done over Google Hangouts. "
+    "Focus areas: coding, data structures, algorithm, system design, integration and leadership."
+)
+
+
+class ChatLoadTester:
+    def __init__(self, host: str, port: int, pid: Optional[int]):
+        self.host = host
+        self.port = port
+        self.pid = pid
+        self.latencies: List[float] = []
+        self.errors = 0
+        self.max_threads = 0
+
+    def upload_document(self):
+        boundary = uuid.uuid4().hex
+        body = (
+            f"--{boundary}\r\nContent-Disposition: form-data; name=\"file\"; filename=\"load_test.txt\"\r\n"
+            f"Content-Type: text/plain\r\n\r\n{SAMPLE_DOCUMENT}\r\n--{boundary}--\r\n"
+        ).encode()
+        request = urllib.request.Request(
+            f"http://{self.host}:{self.port}/api/documents/upload", data=body,
+            headers={"Content-Type": f"multipart/form-data; boundary={boundary}"})
+        with urllib.request.urlopen(request) as response:
+            job = json.load(response)
+        # Wait for background ingestion to finish
+        while job["status"] not in ("COMPLETED", "FAILED"):
+            time.sleep(0.5)
+            with urllib.request.urlopen(f"http://{self.host}:{self.port}/api/documents/jobs/{job['id']}") as response:
+                job = json.load(response)
+        if job["status"] == "FAILED":
+            raise RuntimeError(f"Upload failed: {job['error']}")
+
+    async def chat(self, question: str):
+        body = json.dumps({"message": question}).encode()
+        started = time.perf_counter()
+        try:
+            reader, writer = await asyncio.open_connection(self.host, self.port)
+            writer.write(
+                f"POST /api/chat/message HTTP/1.1\r\nHost: {self.host}\r\nContent-Type: application/json\r\n"
+                f"Content-Length: {len(body)}\r\nConnection: close\r\n\r\n".encode() + body)
+            await writer.drain()
+            status_line = await reader.readline()
+            await reader.read()
+            writer.close()
+            if b" 200 " not in status_line:
+                self.errors += 1
+                return
+            self.latencies.append(time.perf_counter() - started)
+        except (ConnectionError, OSError):
+            self.errors += 1
+
+    async def sample_threads(self, stop: asyncio.Event):
+        while not stop.is_set():
+            try:
+                with open(f"/proc/{self.pid}/status") as status:
+                    for line in status:
+                        if line.startswith("Threads:"):
+                            self.max_threads = max(self.max_threads, int(line.split()[1]))
+            except OSError:
+                return
+            await asyncio.sleep(0.2)
+
+    async def run(self, total: int, concurrency: int):
+        queue: asyncio.Queue = asyncio.Queue()
+        for i in range(total):
+            # Unique questions, so every request goes through embedding and generation
+            queue.put_nowait(f"how many interviews are there (load test question {i})")
+
+        async def worker():
+            while not queue.empty():
+                await self.chat(queue.get_nowait())
+
+        stop = asyncio.Event()
+        sampler = asyncio.create_task(self.sample_threads(stop)) if self.pid else None
+        started = time.perf_counter()
+        await asyncio.gather(*(worker() for _ in range(concurrency)))
+        elapsed = time.perf_counter() - started
+        stop.set()
+        if sampler:
+            await sampler
+        self.report(total, concurrency, elapsed)
+
+    def report(self, total: int, concurrency: int, elapsed: float):
+        print(f"\n{'='*60}")
+        print(f"Chat load test: {total} requests, {concurrency} concurrent")
+        print(f"{'='*60}")
+        print(f"Completed:    {len(self.latencies)} ok, {self.errors} errors in {elapsed:.1f}s")
+        print(f"Throughput:   {len(self.latencies) / elapsed:.1f} chats/s")
+        if self.latencies:
+            ordered = sorted(self.latencies)
+            percentile = lambda p: ordered[min(len(ordered) - 1, int(p * len(ordered)))]
+            print(f"Latency:      mean {statistics.mean(ordered):.3f}s, p50 {percentile(0.50):.3f}s, "
+                  f"p95 {percentile(0.95):.3f}s, p99 {percentile(0.99):.3f}s")
+        if self.pid:
+            print(f"JVM threads:  {self.max_threads} at most while under load")
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Concurrent chat load test")
+    parser.add_argument("--host", default="localhost")
+    parser.add_argument("--port", type=int, default=8080)
+    parser.add_argument("--requests", type=int, default=5000)
+    parser.add_argument("--concurrency", type=int, default=1000)
+    parser.add_argument("--pid", type=int, help="backend process id, to sample its thread count")
+    parser.add_argument("--skip-upload", action="store_true", help="use the documents already uploaded")
+    args = parser.parse_args()
+
+    tester = ChatLoadTester(args.host, args.port, args.pid)
+    if not args.skip_upload:
+        tester.upload_document()
+    asyncio.run(tester.run(args.requests, args.concurrency))
+
+
+if __name__ == "__main__":
+    main()
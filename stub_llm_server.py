@@ -0,0 +1,110 @@
+#!/usr/bin/env python3
+"""
+Stub Gemini API for load testing the Document Chat backend
+Answers embedContent, batchEmbedContents, generateContent and
+streamGenerateContent after a fixed delay, using asyncio so thousands of
+requests can be in flight at once.
+
+Start the backend against it with:
+    java -jar target/document-chat-backend-0.0.1-SNAPSHOT.jar \\
+        --gemini.api.key=stub --gemini.api.base-url=http://127.0.0.1:9999
+"""
+
+import argparse
+import asyncio
+import hashlib
+import json
+import random
+
+DIMENSIONS = 768
+
+
+class StubGemini:
+    def __init__(self, latency: float, stream_chunks: int):
+        self.latency = latency
+        self.stream_chunks = stream_chunks
+        self.requests = 0
+
+    def embedding(self, text: str) -> list:
+        # Deterministic per text, so different questions get different vectors
+        seed = int.from_bytes(hashlib.sha256(text.encode()).digest()[:8], "big")
+        rng = random.Random(seed)
+        return [rng.uniform(-1.0, 1.0) for _ in range(DIMENSIONS)]
+
+    async def handle(self, reader: asyncio.StreamReader, writer: asyncio.StreamWriter):
+        try:
+            while True:
+                request_line = await reader.readline()
+                if not request_line:
+                    break
+                headers = {}
+                while True:
+                    line = await reader.readline()
+                    if line in (b"\r\n", b"\n", b""):
+                        break
+                    name, _, value = line.decode().partition(":")
+                    headers[name.strip().lower()] = value.strip()
+                body = await reader.readexactly(int(headers.get("content-length", "0")))
+                path = request_line.decode().split(" ")[1].split("?")[0]
+                self.requests += 1
+                await self.respond(writer, path, json.loads(body or b"{}"))
+        except (ConnectionError, asyncio.IncompleteReadError):
+            pass
+        finally:
+            writer.close()
+
+    def usage(self, body: dict, output_tokens: int) -> dict:
+        # Roughly four characters per token, like the real API reports
+        prompt = "".join(p.get("text", "") for c in body.get("contents", []) for p in c.get("parts", []))
+        return {"promptTokenCount": len(prompt) // 4, "candidatesTokenCount": output_tokens,
+                "totalTokenCount": len(prompt) // 4 + output_tokens}
+
+    async def respond(self, writer: asyncio.StreamWriter, path: str, body: dict):
+        await asyncio.sleep(self.latency)
+        if path.endswith(":streamGenerateContent"):
+            writer.write(b"HTTP/1.1 200 OK\r\nContent-Type: text/event-stream\r\nTransfer-Encoding: chunked\r\n\r\n")
+            for i in range(self.stream_chunks):
+                chunk = {"candidates": [{"content": {"parts": [{"text": f"token{i} "}]}}],
+                         "usageMetadata": self.usage(body, i + 1)}
+                event = "data: " + json.dumps(chunk) + "\r\n\r\n"
+                data = event.encode()
+                writer.write(b"%x\r\n%s\r\n" % (len(data), data))
+                await writer.drain()
+                await asyncio.sleep(self.latency / self.stream_chunks)
+            writer.write(b"0\r\n\r\n")
+            await writer.drain()
+            return
+
+        if path.endswith(":batchEmbedContents"):
+            out = {"embeddings": [{"values": self.embedding(r["content"]["parts"][0]["text"])} for r in body["requests"]]}
+        elif path.endswith(":embedContent"):
+            out = {"embedding": {"values": self.embedding(body.get("text", ""))}}
+        elif path.endswith(":generateContent"):
+            out = {"candidates": [{"content": {"parts": [{"text": "Based on the documents, there are 5 interviews."}]}}],
+                   "usageMetadata": self.usage(body, 9)}
+        else:
+            out = {"error": "unknown endpoint " + path}
+        data = json.dumps(out).encode()
+        writer.write(b"HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: %d\r\n\r\n%s" % (len(data), data))
+        await writer.drain()
+
+
+async def serve(host: str, port: int, stub: StubGemini):
+    server = await asyncio.start_server(stub.handle, host, port, backlog=4096)
+    print(f"Stub Gemini listening on http://{host}:{port} (latency {stub.latency}s)")
+    async with server:
+        await server.serve_forever()
+
+
+def main():
+    parser = argparse.ArgumentParser(description="Stub Gemini API for load tests")
+    parser.add_argument("--host", default="127.0.0.1")
+    parser.add_argument("--port", type=int, default=9999)
+    parser.add_argument("--latency", type=float, default=1.0, help="seconds before each response")
+    parser.add_argument("--stream-chunks", type=int, default=10, help="parts per streamed answer")
+    args = parser.parse_args()
+    asyncio.run(serve(args.host, args.port, StubGemini(args.latency, args.stream_chunks)))
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,419 @@
+#!/usr/bin/env python3
+"""
+Equivalence check for the offline (no Gemini API key) responder
+
+Every query below was answered by the responder before its keyword rules were
+compiled into QueryIntents, and each case records which answer it gave. The
+table pins that behaviour: a change to the keyword groups or intent rules that
+answers any of these queries differently fails the check.
+
+Run it against a backend started WITHOUT a Gemini API key whose only document
+is InterviewGuideAtGoogle.pdf (uploaded by the script if no document exists).
+Answers are compared by their fixed opening; the interview count and the
+general answer continue with text taken from the retrieved chunks.
+"""
+
+import os
+import sys
+import time
+
+import requests
+
+# API Configuration
+BASE_URL = "http://localhost:8080"
+CHAT_ENDPOINT = f"{BASE_URL}/api/chat/message"
+DOCUMENTS_ENDPOINT = f"{BASE_URL}/api/documents"
+UPLOAD_ENDPOINT = f"{BASE_URL}/api/documents/upload"
+GUIDE_PATH = os.path.join(os.path.dirname(os.path.abspath(__file__)), "InterviewGuideAtGoogle.pdf")
+
+# Opening of the answer for each intent
+OUT_OF_SCOPE = "Out of scope."
+COMPANY = "Based on the documents, this is a Google interview process."
+POSITION = "Based on the documents, this interview guide is for Google's general technical interview process."
+INTERVIEW_COUNT = "Based on the documents, there are "
+FOCUS_AREAS = "Based on the documents, the four focus areas for the Google interview are:"
+DATA_STRUCTURES = "Based on the documents, you should know these data structures for the coding interview:"
+LANGUAGES = "Based on the documents, the programming languages mentioned are Java and Python."
+PITFALLS = "Based on the documents, common pitfalls to avoid during the interview include:"
+DURATION = "Based on the documents, each interview is 45-60 minutes long."
+PLATFORM = "Based on the documents, the interviews are conducted over Google Hangouts."
+TIPS = "Based on the documents, here are some key interview tips:"
+ALGORITHMS = "Based on the documents, you should understand:"
+SQL = "Based on the documents, SQL topics include:"
+PROCESS = "Based on the documents, the Google interview process consists of:"
+FOUND = "Based on the documents, here's what I found: "
+
+# (query, expected answer)
+CASES = [
+    ("How many interviews are there in the Google interview process?", INTERVIEW_COUNT),
+    ("What is the total number of interviews?", INTERVIEW_COUNT),
+    ("How many rounds of interviews are there?", INTERVIEW_COUNT),
+    ("What are the four focus areas for the Google interview?", FOCUS_AREAS),
+    ("What are the different focus areas mentioned?", FOCUS_AREAS),
+    ("Tell me about the focus areas for the interview", FOCUS_AREAS),
+    ("What data structures should I know for the coding interview?", DATA_STRUCTURES),
+    ("What programming languages are mentioned for the interview?", LANGUAGES),
+    ("What are the important data structures to study?", DATA_STRUCTURES),
+    ("Should I know Java or Python for the interview?", LANGUAGES),
+    ("What are the common pitfalls to avoid during the interview?", PITFALLS),
+    ("What should I avoid during the interview?", PITFALLS),
+    ("What are the interviewing pitfalls mentioned?", PITFALLS),
+    ("What tips are given for the interview?", INTERVIEW_COUNT),
+    ("What is the duration of each interview?", DURATION),
+    ("How long are the interviews?", DURATION),
+    ("What platform is used for the interviews?", PLATFORM),
+    ("Are the interviews done over Google Hangouts?", PLATFORM),
+    ("What should I prepare for the Google interview?", PROCESS),
+    ("How should I prepare for the technical interview?", FOUND),
+    ("What are the evaluation criteria for coding?", FOUND),
+    ("What is the weather like today?", OUT_OF_SCOPE),
+    ("How do I cook pasta?", OUT_OF_SCOPE),
+    ("What is the capital of France?", OUT_OF_SCOPE),
+    ("Tell me about quantum physics", OUT_OF_SCOPE),
+    ("What are the latest stock prices?", OUT_OF_SCOPE),
+    ("What is the meaning of life?", OUT_OF_SCOPE),
+    ("How do I become a millionaire?", OUT_OF_SCOPE),
+    ("What is love?", OUT_OF_SCOPE),
+    ("Why is the sky blue?", OUT_OF_SCOPE),
+    ("What are the salary ranges at Google?", FOUND),
+    ("How do I get a job at Microsoft?", OUT_OF_SCOPE),
+    ("What is the company culture like?", COMPANY),
+    ("Tell me about Google's benefits", OUT_OF_SCOPE),
+    ("What is the work-life balance like?", OUT_OF_SCOPE),
+    ("What's the interview process? (with special chars)", PROCESS),
+    ("Interview process: 5 rounds?", PROCESS),
+    ("How many interviews? (5 total)", INTERVIEW_COUNT),
+    ("What is the exact duration of each interview in minutes?", DURATION),
+    ("What is the specific platform used for interviews?", PLATFORM),
+    ("What are the exact evaluation criteria?", FOUND),
+    ("How many interveiws are there?", FOUND),
+    ("What are the focas areas?", FOUND),
+    ("Tell me about data structurs", OUT_OF_SCOPE),
+    ("INTERVIEW PROCESS?", PROCESS),
+    ("interview process?", PROCESS),
+    ("How many interviews are there?", INTERVIEW_COUNT),
+    ("How many interview rounds I have to give?", FOUND),
+    ("How many rounds of interviews?", INTERVIEW_COUNT),
+    ("Number of interview rounds?", INTERVIEW_COUNT),
+    ("What are the four focus areas?", FOCUS_AREAS),
+    ("What focus areas are there?", FOCUS_AREAS),
+    ("Tell me about the focus areas", FOCUS_AREAS),
+    ("What are the interview focus areas?", FOCUS_AREAS),
+    ("Focus areas for Google interview?", FOCUS_AREAS),
+    ("What data structures should I know?", DATA_STRUCTURES),
+    ("Which data structures are important?", DATA_STRUCTURES),
+    ("Tell me about data structures", DATA_STRUCTURES),
+    ("What data structures to study?", DATA_STRUCTURES),
+    ("Data structures for coding interview?", DATA_STRUCTURES),
+    ("What programming languages are mentioned?", LANGUAGES),
+    ("Which programming languages to use?", LANGUAGES),
+    ("Tell me about programming languages", LANGUAGES),
+    ("What languages are recommended?", LANGUAGES),
+    ("Programming languages for interview?", LANGUAGES),
+    ("What are the common pitfalls?", PITFALLS),
+    ("What pitfalls should I avoid?", PITFALLS),
+    ("Tell me about interview pitfalls", PITFALLS),
+    ("What mistakes to avoid?", OUT_OF_SCOPE),
+    ("Common interview mistakes?", INTERVIEW_COUNT),
+    ("What is the interview duration?", DURATION),
+    ("Tell me about interview length", DURATION),
+    ("How long does each interview last?", DURATION),
+    ("Interview time duration?", DURATION),
+    ("What platform is used for interviews?", PLATFORM),
+    ("Where are interviews conducted?", PLATFORM),
+    ("Tell me about interview platform", PLATFORM),
+    ("What technology is used?", FOUND),
+    ("Interview platform details?", PLATFORM),
+    ("Tell me about the interview process", PROCESS),
+    ("What is the interview like?", PROCESS),
+    ("How does the interview work?", PROCESS),
+    ("Interview process details?", PROCESS),
+    ("What happens in the interview?", PROCESS),
+    ("What tips are given?", TIPS),
+    ("Any advice for the interview?", TIPS),
+    ("Tell me about interview tips", TIPS),
+    ("What recommendations are there?", OUT_OF_SCOPE),
+    ("Interview preparation tips?", TIPS),
+    ("What algorithms should I know?", ALGORITHMS),
+    ("Tell me about algorithms", OUT_OF_SCOPE),
+    ("Algorithm questions in interview?", ALGORITHMS),
+    ("What algorithm topics are covered?", ALGORITHMS),
+    ("Algorithm preparation tips?", TIPS),
+    ("What about SQL questions?", FOUND),
+    ("Tell me about SQL in interviews", SQL),
+    ("SQL interview preparation?", SQL),
+    ("Database questions in interview?", SQL),
+    ("What SQL topics to study?", SQL),
+    ("What is the weather today?", OUT_OF_SCOPE),
+    ("Will it rain tomorrow?", OUT_OF_SCOPE),
+    ("Is it sunny outside?", OUT_OF_SCOPE),
+    ("What's the temperature?", OUT_OF_SCOPE),
+    ("Weather forecast for this week?", OUT_OF_SCOPE),
+    ("What's a good recipe for chicken?", OUT_OF_SCOPE),
+    ("How to make pizza?", OUT_OF_SCOPE),
+    ("Cooking tips for beginners?", TIPS),
+    ("Best way to cook rice?", OUT_OF_SCOPE),
+    ("Where is Tokyo located?", OUT_OF_SCOPE),
+    ("Tell me about geography", OUT_OF_SCOPE),
+    ("What countries are in Europe?", OUT_OF_SCOPE),
+    ("Geography facts?", OUT_OF_SCOPE),
+    ("What is the theory of relativity?", OUT_OF_SCOPE),
+    ("How does gravity work?", OUT_OF_SCOPE),
+    ("Explain DNA structure", OUT_OF_SCOPE),
+    ("What is photosynthesis?", OUT_OF_SCOPE),
+    ("How does blockchain work?", OUT_OF_SCOPE),
+    ("Tell me about machine learning", OUT_OF_SCOPE),
+    ("What is artificial intelligence?", OUT_OF_SCOPE),
+    ("How to build a website?", OUT_OF_SCOPE),
+    ("What is cloud computing?", OUT_OF_SCOPE),
+    ("How to find love?", OUT_OF_SCOPE),
+    ("What should I do with my life?", OUT_OF_SCOPE),
+    ("How to be happy?", OUT_OF_SCOPE),
+    ("What is success?", OUT_OF_SCOPE),
+    ("How to start a business?", OUT_OF_SCOPE),
+    ("What is marketing?", OUT_OF_SCOPE),
+    ("Tell me about finance", OUT_OF_SCOPE),
+    ("How to invest money?", OUT_OF_SCOPE),
+    ("What is entrepreneurship?", OUT_OF_SCOPE),
+    ("What's the best movie?", OUT_OF_SCOPE),
+    ("Tell me about music", OUT_OF_SCOPE),
+    ("What books should I read?", OUT_OF_SCOPE),
+    ("How to play guitar?", OUT_OF_SCOPE),
+    ("What games are popular?", OUT_OF_SCOPE),
+    ("How to lose weight?", OUT_OF_SCOPE),
+    ("What is a healthy diet?", OUT_OF_SCOPE),
+    ("How to exercise properly?", OUT_OF_SCOPE),
+    ("What vitamins should I take?", OUT_OF_SCOPE),
+    ("How to sleep better?", OUT_OF_SCOPE),
+    ("How to prepare for a Microsoft interview?", FOUND),
+    ("What about Amazon interview process?", PROCESS),
+    ("Tell me about Facebook interview", PROCESS),
+    ("How many rounds in Microsoft interview?", FOUND),
+    ("Amazon interview duration?", DURATION),
+    ("Facebook interview platform?", PLATFORM),
+    ("Apple interview focus areas?", FOCUS_AREAS),
+    ("Netflix interview tips?", TIPS),
+    ("How to answer behavioral questions?", FOUND),
+    ("What to wear for an interview?", PROCESS),
+    ("How to follow up after interview?", FOUND),
+    ("What questions to ask interviewer?", PROCESS),
+    ("How to negotiate salary?", OUT_OF_SCOPE),
+    ("How to prepare for phone interview?", FOUND),
+    ("Video interview best practices?", OUT_OF_SCOPE),
+    ("Panel interview tips?", TIPS),
+    ("Group interview strategies?", OUT_OF_SCOPE),
+    ("Technical interview vs behavioral?", FOUND),
+    ("What are the common pitfalls to avoid?", PITFALLS),
+    ("how many interview rounds I have to give in this interview", FOUND),
+    ("how many interviews are there (load test question", INTERVIEW_COUNT),
+    ("how many interviews are there", INTERVIEW_COUNT),
+    ("what is the total number of interviews", INTERVIEW_COUNT),
+    ("how many rounds do I need to complete", INTERVIEW_COUNT),
+    ("which company interview is it", COMPANY),
+    ("which position is this interview document about", POSITION),
+    ("what company is this for", COMPANY),
+    ("what are the focus areas", FOCUS_AREAS),
+    ("tell me about the focus areas", FOCUS_AREAS),
+    ("what are the four focus areas", FOCUS_AREAS),
+    ("what data structures should I know", DATA_STRUCTURES),
+    ("which data structures are important", DATA_STRUCTURES),
+    ("tell me about data structures for coding", DATA_STRUCTURES),
+    ("what programming languages are mentioned", LANGUAGES),
+    ("which languages should I use", OUT_OF_SCOPE),
+    ("what are the common pitfalls", PITFALLS),
+    ("what should I avoid during interview", PITFALLS),
+    ("give me some interview tips", TIPS),
+    ("how long is each interview", DURATION),
+    ("what platform is used for interviews", PLATFORM),
+    ("where are interviews conducted", PLATFORM),
+    ("what algorithms should I know", ALGORITHMS),
+    ("what SQL topics are covered", SQL),
+    ("how does the interview process work", PROCESS),
+    ("what is the interview like", PROCESS),
+    ("tell me about the interview process", PROCESS),
+    ("what is the weather today", OUT_OF_SCOPE),
+    ("how to cook pasta", OUT_OF_SCOPE),
+    ("what is the capital of France", OUT_OF_SCOPE),
+    ("tell me about quantum physics", OUT_OF_SCOPE),
+    ("what stocks should I buy", OUT_OF_SCOPE),
+    ("how to lose weight", OUT_OF_SCOPE),
+    ("What are the focus areas for the Google interview?", FOCUS_AREAS),
+    ("What programming languages are mentioned in the interview guide?", LANGUAGES),
+    ("What are the four focus areas mentioned in the document?", POSITION),
+    ("", OUT_OF_SCOPE),
+    ("  ", OUT_OF_SCOPE),
+    ("hi", OUT_OF_SCOPE),
+    ("?!?", OUT_OF_SCOPE),
+    ("12345", OUT_OF_SCOPE),
+    ("...a", OUT_OF_SCOPE),
+    ("Hey", OUT_OF_SCOPE),
+    ("What is the weather like during a Google interview?", PROCESS),
+    ("Which company should I invest in?", COMPANY),
+    ("Explain quantum physics", OUT_OF_SCOPE),
+    ("Tell me about Microsoft culture", OUT_OF_SCOPE),
+    ("What is the salary at Amazon?", OUT_OF_SCOPE),
+    ("How do I prepare for a Facebook interview?", FOUND),
+    ("Best pizza recipe", OUT_OF_SCOPE),
+    ("Should I learn machine learning?", OUT_OF_SCOPE),
+    ("Which company is this interview for?", COMPANY),
+    ("which company is this?", COMPANY),
+    ("What company is it?", COMPANY),
+    ("company interview", COMPANY),
+    ("Which position is this interview for?", POSITION),
+    ("which position is this?", OUT_OF_SCOPE),
+    ("What position is described?", OUT_OF_SCOPE),
+    ("position in the document", POSITION),
+    ("Which document is this?", POSITION),
+    ("what document is this", POSITION),
+    ("What is the document about?", POSITION),
+    ("document about", POSITION),
+    ("How many interviews?", INTERVIEW_COUNT),
+    ("number of rounds", INTERVIEW_COUNT),
+    ("total sessions", INTERVIEW_COUNT),
+    ("count the meetings", INTERVIEW_COUNT),
+    ("How many interviews do I have to attend?", INTERVIEW_COUNT),
+    ("Do I have to go through many rounds?", FOUND),
+    ("How many should I take?", OUT_OF_SCOPE),
+    ("How many data structures should I know?", DATA_STRUCTURES),
+    ("How many algorithms should I study for the interview rounds?", ALGORITHMS),
+    ("How many topics per round?", FOUND),
+    ("amount of interview rounds", INTERVIEW_COUNT),
+    ("Focus area", FOCUS_AREAS),
+    ("What do they focus on?", FOCUS_AREAS),
+    ("Tell me their focus", FOCUS_AREAS),
+    ("data structures", DATA_STRUCTURES),
+    ("What structure should I know?", DATA_STRUCTURES),
+    ("Which structure is important?", OUT_OF_SCOPE),
+    ("structure to study", OUT_OF_SCOPE),
+    ("structure for coding", DATA_STRUCTURES),
+    ("Which structures should I tell them about?", OUT_OF_SCOPE),
+    ("What programming language?", LANGUAGES),
+    ("Java and Python", LANGUAGES),
+    ("Which language, Java?", LANGUAGES),
+    ("language python", LANGUAGES),
+    ("Which language is mentioned?", LANGUAGES),
+    ("What language is recommended?", LANGUAGES),
+    ("What language should I use?", OUT_OF_SCOPE),
+    ("pitfalls", PITFALLS),
+    ("What to avoid?", PITFALLS),
+    ("Common mistakes?", OUT_OF_SCOPE),
+    ("How long is it?", OUT_OF_SCOPE),
+    ("duration", OUT_OF_SCOPE),
+    ("How long does the interview last?", DURATION),
+    ("interview time", DURATION),
+    ("Tell me the length", OUT_OF_SCOPE),
+    ("platform?", OUT_OF_SCOPE),
+    ("Hangouts", PLATFORM),
+    ("How is the interview conducted?", PLATFORM),
+    ("Where is the interview?", PLATFORM),
+    ("What technology is used in the interview?", PLATFORM),
+    ("tips", TIPS),
+    ("Any advice?", TIPS),
+    ("recommendation for the interview", TIPS),
+    ("Which algorithm should I know?", ALGORITHMS),
+    ("algorithm interview", ALGORITHMS),
+    ("algorithm preparation", ALGORITHMS),
+    ("algorithm topic", ALGORITHMS),
+    ("SQL interview", SQL),
+    ("sql preparation", SQL),
+    ("SQL topics", SQL),
+    ("database interview questions", SQL),
+    ("What is the interview process?", PROCESS),
+    ("What will happen in the interview?", PROCESS),
+    ("Tell me about the interview", PROCESS),
+    ("What about the interview?", PROCESS),
+    ("INTERVIEW PROCESS", PROCESS),
+    ("HOW MANY INTERVIEWS ARE THERE?", INTERVIEW_COUNT),
+    ("How many interviews and how long are they?", INTERVIEW_COUNT),
+    ("Tips and pitfalls for the SQL interview", PITFALLS),
+    ("What platform and duration?", OUT_OF_SCOPE),
+    ("hashtable", FOUND),
+    ("Explain BFS and DFS traversal", FOUND),
+    ("What is big-o complexity?", OUT_OF_SCOPE),
+    ("red black tree", FOUND),
+    ("What is Googleyness?", FOUND),
+    ("leadership", FOUND),
+    ("system design", FOUND),
+    ("Tell me about the resume", OUT_OF_SCOPE),
+    ("What is a trie?", OUT_OF_SCOPE),
+    ("linked list manipulation", FOUND),
+    ("brute force vs optimized solution", FOUND),
+    ("Do you know about skip lists?", FOUND),
+    ("Can you help me?", OUT_OF_SCOPE),
+    ("Show me something", FOUND),
+    ("whatever", OUT_OF_SCOPE),
+    ("rounds", OUT_OF_SCOPE),
+    ("rounded corners", OUT_OF_SCOPE),
+    ("the interviewer", FOUND),
+    ("hangoutsy", PLATFORM),
+    ("platforms", OUT_OF_SCOPE),
+    ("advices", TIPS),
+    ("avoidance", OUT_OF_SCOPE),
+    ("sqlite database", OUT_OF_SCOPE),
+    ("Is Google a good company?", FOUND),
+    ("How many people work at Google?", FOUND),
+    ("Should I know Java for the Microsoft interview?", FOUND),
+    ("What happens after the interview?", PROCESS),
+    ("How should I answer questions?", FOUND),
+    ("How do I find success?", OUT_OF_SCOPE),
+    ("What is the best way to play guitar?", OUT_OF_SCOPE),
+    ("What is the DNA structure?", OUT_OF_SCOPE),
+    ("photosynthesis explained", OUT_OF_SCOPE),
+    ("Which position and company?", COMPANY),
+    ("tell me everything", OUT_OF_SCOPE),
+    ("interview", FOUND),
+    ("Google", FOUND),
+    ("coding", FOUND),
+    ("What are the focus areas and tips for the coding interview?", FOCUS_AREAS),
+]
+
+def wait_for_ingestion(job, timeout=120):
+    """Poll the ingestion job returned by the upload endpoint until it finishes"""
+    deadline = time.time() + timeout
+    while time.time() < deadline:
+        status = requests.get(f"{DOCUMENTS_ENDPOINT}/jobs/{job['id']}").json()
+        if status['status'] == 'COMPLETED':
+            return True
+        if status['status'] == 'FAILED':
+            print(f"❌ Document processing failed: {status.get('error')}")
+            return False
+        time.sleep(1)
+    print("❌ Timed out waiting for document processing")
+    return False
+
+def upload_guide():
+    """Upload the interview guide unless a document is already there"""
+    response = requests.get(DOCUMENTS_ENDPOINT)
+    if response.status_code == 200 and response.json()["totalElements"] > 0:
+        print("✅ Document already uploaded")
+        return True
+    with open(GUIDE_PATH, 'rb') as f:
+        files = {'file': ('InterviewGuideAtGoogle.pdf', f, 'application/pdf')}
+        response = requests.post(UPLOAD_ENDPOINT, files=files, timeout=30)
+    if response.status_code not in (200, 202):
+        print(f"❌ Failed to upload document: {response.status_code} - {response.text}")
+        return False
+    return wait_for_ingestion(response.json())
+
+def main():
+    print("🧪 Offline responder equivalence check")
+    print("=" * 50)
+    if not upload_guide():
+        return 1
+    
+    failures = []
+    for query, expected in CASES:
+        response = requests.post(CHAT_ENDPOINT, json={"message": query}, timeout=30)
+        answer = response.json().get("response", "") if response.status_code == 200 else response.text
+        if response.status_code != 200 or not answer.startswith(expected):
+            failures.append((query, expected, answer))
+    
+    for query, expected, answer in failures:
+        print(f"❌ {query!r}")
+        print(f"   expected: {expected[:80]!r}")
+        print(f"   got:      {answer[:80]!r}")
+    print(f"\n{len(CASES) - len(failures)}/{len(CASES)} queries answered as before")
+    return 1 if failures else 0
+
+if __name__ == "__main__":
+    sys.exit(main())